@@ -1,5 +1,8 @@
 package ticTacToe;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 public class Agent {
 	
@@ -10,6 +13,11 @@ public class Agent {
 	
 	protected char name; //'X' or 'O'
 	
+	/**
+	 * Receives the agent's training metrics, if it trains. Null (no telemetry) by default.
+	 */
+	protected TrainingListener listener;
+	
 	/**
 	 * Name of the agent ('X' or 'O') is set when the agent joins the game
 	 * @param p
@@ -57,10 +65,60 @@ public class Agent {
 		this.name=n;
 	}
 	
+	/**
+	 * Sets the listener receiving the metrics of the agent's training, see {@link TrainingListener}. Agents train in
+	 * their constructors, so the listener only sees the training started after this call.
+	 * @param listener a listener, or null to disable telemetry
+	 */
+	public void setListener(TrainingListener listener)
+	{
+		this.listener=listener;
+	}
+	
 	
+	/**
+	 * The file this agent's policy is saved to and loaded from by default: a .pol file named after the agent's class,
+	 * directly under the project (working) folder.
+	 * @return
+	 */
+	public String getPolicyFile()
+	{
+		return getClass().getSimpleName()+".pol";
+	}
+	
+	/**
+	 * Loads the agent's policy from {@link #getPolicyFile()}, if it exists, replacing its current policy. See
+	 * {@link Policy#Policy(String)}. Agents never call this themselves: the file may be from another run, with other
+	 * rewards or discount.
+	 * @return the policy loaded, or null if there is no such file.
+	 */
 	public Policy loadPolicyFromFile()
 	{
-		return null;
+		return loadPolicyFromFile(getPolicyFile());
+	}
+	
+	/**
+	 * Loads the agent's policy from {@code file}, if it exists. See {@link Policy#Policy(String)}.
+	 * @param file
+	 * @return the policy loaded, or null if there is no such file.
+	 */
+	public Policy loadPolicyFromFile(String file)
+	{
+		if (!Files.exists(Paths.get(file)))
+			return null;
+		
+		this.policy=new Policy(file);
+		return policy;
+	}
+	
+	/**
+	 * Saves the agent's policy to {@link #getPolicyFile()}, so that later agents can load it instead of training again.
+	 * See {@link Policy#save(String)}.
+	 * @throws IOException
+	 */
+	public void savePolicyToFile() throws IOException
+	{
+		policy.save(getPolicyFile());
 	}
 	
 	
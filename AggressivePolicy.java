@@ -1,7 +1,6 @@
 package ticTacToe;
 
 
-import java.util.List;
 import java.util.Random;
 /**
  * An agrgessive policy: if there is a winning move given a game state (Game object) then this policy finds it. Otherwise returns a
@@ -16,27 +15,25 @@ public class AggressivePolicy extends Policy {
 	public Move getMove(Game g) {
 		
 		
-		List<Move> moves=g.getPossibleMoves();
+		long empty=~(g.getXBits()|g.getOBits())&g.getShape().full;
 		
-		for(Move m:moves)
+		//play each empty cell in place on one copy, check the result, then take it back.
+		Game resulting=g.clone();
+		for(long m=empty;m!=0;m&=m-1)
 		{
-			
-			Game resulting=null;
-			try{
-				resulting=g.simulateMove(m);
-			}
-			catch(IllegalMoveException e)
-			{
-				System.out.println(e.getMessage());
-				e.printStackTrace();
-			}
-			if (resulting.getState()==Game.X_WON||resulting.getState()==Game.O_WON)
-				return m;
+			int cell=Long.numberOfTrailingZeros(m);
+			resulting.makeMove(cell);
+			int state=resulting.getState();
+			resulting.unmakeMove(cell);
+			if (state==Game.X_WON||state==Game.O_WON)
+				return g.moveOf(cell);
 		}
 		
 		Random r=new Random();
+		for(int i=r.nextInt(Long.bitCount(empty));i>0;i--)
+			empty&=empty-1;
 		
-		return moves.get(r.nextInt(moves.size()));
+		return g.moveOf(Long.numberOfTrailingZeros(empty));
 		
 	}
 
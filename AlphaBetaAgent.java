@@ -0,0 +1,276 @@
+package ticTacToe;
+
+
+import java.util.Arrays;
+
+/**
+ * An adversarial search agent: negamax with alpha-beta pruning, which assumes the opponent plays its best move, unlike
+ * the {@link ValueIterationAgent}'s model of a random opponent. It plays as X or O, on Tic-Tac-Toe or on any
+ * {@link MNKBoard}.
+ *
+ * Each move is searched by iterative deepening, up to {@link #maxDepth} moves ahead or the end of the game, whichever is
+ * first; games at the depth limit are valued with {@link #evaluate}. The results are kept in a {@link TranspositionTable},
+ * whose best moves are searched first in the next iteration, and the other moves are ordered by the number of lines
+ * through their cell (central cells first), which makes cut-offs come early. Tic-Tac-Toe is solved outright, in a few
+ * thousand nodes.
+ *
+ * Values are from the point of view of the side to move: a win is worth {@link #WIN} less the number of moves to it, so
+ * faster wins are preferred, a draw 0, and a loss the opposite of a win.
+ *
+ */
+public class AlphaBetaAgent extends Agent {
+
+	/**
+	 * the value of winning now
+	 */
+	static final int WIN=1000000;
+
+	/**
+	 * values beyond {@code WIN-MAX_PLY} are won games
+	 */
+	static final int MAX_PLY=MNKBoard.MAX_CELLS;
+
+	/**
+	 * the number of moves searched ahead, at most
+	 */
+	int maxDepth=Integer.MAX_VALUE;
+
+	/**
+	 * the results of the searches, kept between moves
+	 */
+	final TranspositionTable table;
+
+	/**
+	 * the cells by decreasing number of lines through them, for {@link #orderShape}
+	 */
+	int[] order;
+	MNKBoard orderShape;
+
+	/**
+	 * the best cell of the last search at the root
+	 */
+	private int rootMove;
+
+	/**
+	 * the number of games searched, and the time spent searching, over all moves
+	 */
+	long nodes;
+	long searchNanos;
+
+	/**
+	 * An agent that searches to the end of the game, with a 2^20 entry table
+	 */
+	public AlphaBetaAgent()
+	{
+		this(Integer.MAX_VALUE, 20);
+	}
+
+	/**
+	 *
+	 * @param maxDepth the number of moves searched ahead, at most
+	 * @param tableBits log2 of the number of entries of the transposition table
+	 */
+	public AlphaBetaAgent(int maxDepth, int tableBits)
+	{
+		if (maxDepth<1)
+			throw new IllegalArgumentException("The search depth should be at least 1");
+
+		this.maxDepth=maxDepth;
+		this.table=new TranspositionTable(tableBits);
+	}
+
+	/**
+	 * Searches {@code g} by iterative deepening and returns the best move found.
+	 * @return the move, or null if {@code g} is terminal
+	 */
+	@Override
+	public synchronized Move getMove(Game g)
+	{
+		if (g.isTerminal())
+			return null;
+
+		MNKBoard shape=g.getShape();
+		if (shape!=orderShape)
+			order(shape);
+
+		long start=System.nanoTime();
+		Game game=g.clone();
+		int empty=shape.cells-Long.bitCount(g.getXBits()|g.getOBits());
+		int best=-1;
+		for(int depth=1;depth<=Math.min(maxDepth, empty);depth++)
+		{
+			int value=negamax(game, depth, -WIN, WIN, 0);
+			best=rootMove;
+			//the outcome is known: deeper searches can't change it
+			if (Math.abs(value)>=WIN-MAX_PLY)
+				break;
+		}
+		searchNanos+=System.nanoTime()-start;
+
+		return g.moveOf(best);
+	}
+
+	/**
+	 * Sorts the cells of {@code shape} by decreasing number of lines through them, then by index
+	 */
+	private void order(MNKBoard shape)
+	{
+		Integer[] cells=new Integer[shape.cells];
+		for(int c=0;c<cells.length;c++)
+			cells[c]=c;
+		Arrays.sort(cells, (a, b) -> shape.linesThrough[b].length-shape.linesThrough[a].length);
+
+		order=new int[cells.length];
+		for(int c=0;c<cells.length;c++)
+			order[c]=cells[c];
+		orderShape=shape;
+	}
+
+	/**
+	 * @param game the game searched, played on in place and restored
+	 * @param depth the number of moves left to search
+	 * @param alpha
+	 * @param beta
+	 * @param ply the number of moves from the root
+	 * @return the value of {@code game} for the side to move, within the (alpha, beta) window
+	 */
+	int negamax(Game game, int depth, int alpha, int beta, int ply)
+	{
+		nodes++;
+		int state=game.getState();
+		if (state==Game.DRAW)
+			return 0;
+		if (state!=Game.ONGOING)
+			return -(WIN-ply);//the side that just moved won
+		if (depth==0)
+			return evaluate(game);
+
+		int alphaOrig=alpha;
+		long key=game.longHash();
+		long entry=table.probe(key);
+		int ttMove=-1;
+		if (entry!=0)
+		{
+			ttMove=TranspositionTable.move(entry);
+			if (ply>0 && TranspositionTable.depth(entry)>=depth)
+			{
+				int v=fromTable(TranspositionTable.value(entry), ply);
+				int bound=TranspositionTable.bound(entry);
+				if (bound==TranspositionTable.EXACT)
+					return v;
+				else if (bound==TranspositionTable.LOWER)
+					alpha=Math.max(alpha, v);
+				else
+					beta=Math.min(beta, v);
+				if (alpha>=beta)
+					return v;
+			}
+		}
+
+		long empty=~(game.getXBits()|game.getOBits())&orderShape.full;
+		int best=-WIN-1;
+		int bestMove=-1;
+		//the table's move first, then the others by the cell order
+		for(int i=-1;i<order.length;i++)
+		{
+			int c=(i<0)?ttMove:order[i];
+			if (c<0 || (empty&(1L<<c))==0 || (i>=0 && c==ttMove))
+				continue;
+
+			game.makeMove(c);
+			int v=-negamax(game, depth-1, -beta, -alpha, ply+1);
+			game.unmakeMove(c);
+			if (v>best)
+			{
+				best=v;
+				bestMove=c;
+				if (v>alpha)
+					alpha=v;
+				if (alpha>=beta)
+					break;
+			}
+		}
+
+		int bound=(best<=alphaOrig)?TranspositionTable.UPPER:(best>=beta)?TranspositionTable.LOWER:TranspositionTable.EXACT;
+		table.store(key, toTable(best, ply), depth, bound, bestMove);
+		if (ply==0)
+			rootMove=bestMove;
+		return best;
+	}
+
+	/**
+	 * Won and lost values are stored relative to the game they are stored for, rather than to the root
+	 */
+	private static int toTable(int value, int ply)
+	{
+		if (value>=WIN-MAX_PLY)
+			return value+ply;
+		if (value<=-(WIN-MAX_PLY))
+			return value-ply;
+		return value;
+	}
+
+	private static int fromTable(int value, int ply)
+	{
+		if (value>=WIN-MAX_PLY)
+			return value-ply;
+		if (value<=-(WIN-MAX_PLY))
+			return value+ply;
+		return value;
+	}
+
+	/**
+	 * The value of an ongoing game at the depth limit, for the side to move: each line still open to only one side is
+	 * worth 8^(pieces-1) to that side. Kept well below {@link #WIN}.
+	 * @param game
+	 * @return
+	 */
+	int evaluate(Game game)
+	{
+		long mine=(game.side==Game.X_SIDE)?game.getXBits():game.getOBits();
+		long theirs=(game.side==Game.X_SIDE)?game.getOBits():game.getXBits();
+		long value=0;
+		for(long line: orderShape.lines)
+		{
+			int my=Long.bitCount(line&mine);
+			int their=Long.bitCount(line&theirs);
+			if (their==0 && my>0)
+				value+=1L<<(3*(my-1));
+			else if (my==0 && their>0)
+				value-=1L<<(3*(their-1));
+		}
+
+		return (int) Math.max(-WIN/2, Math.min(WIN/2, value));
+	}
+
+	/**
+	 * @return the number of games searched since the agent was created
+	 */
+	public long getNodes()
+	{
+		return nodes;
+	}
+
+	/**
+	 * @return the games searched per second since the agent was created
+	 */
+	public double getNodesPerSecond()
+	{
+		return (searchNanos==0)?0:nodes/(searchNanos/1e9);
+	}
+
+	public TranspositionTable getTable()
+	{
+		return table;
+	}
+
+	public static void main(String a[]) throws IllegalMoveException
+	{
+		//Test method: a depth 6 search against a defensive agent, on a 5x5 board with 4 in a row to win.
+		AlphaBetaAgent agent=new AlphaBetaAgent(6, 20);
+		MNKGame g=new MNKGame(new MNKBoard(5, 5, 4), agent, new DefensiveAgent());
+		g.playOut();
+		System.out.println(agent.getNodes()+" nodes, "+Math.round(agent.getNodesPerSecond())+" nodes/s, TT hit rate "+agent.getTable().getHitRate());
+	}
+
+}
@@ -0,0 +1,53 @@
+package ticTacToe;
+
+
+/**
+ * Plays an {@link AlphaBetaAgent} against the {@link AggressiveAgent} and the {@link DefensiveAgent}, as X and as O, on
+ * Tic-Tac-Toe (searched to the end) and on 4x4 and 5x5 boards with 4 in a row to win (searched to a fixed depth), and
+ * prints as CSV the results of the games, the nodes searched per second and the hit rate of the transposition table.
+ *
+ * Each line is one board (written m x n x k, e.g. 4x4x4), opponent and side, with a new agent (and an empty table) per line, so the hit rate covers the
+ * whole series of games, where the table is kept between moves and games.
+ *
+ * Usage: AlphaBetaReport [games]
+ *
+ */
+public class AlphaBetaReport {
+
+	public static void main(String[] args) throws IllegalMoveException
+	{
+		int games=(args.length>0)?Integer.parseInt(args[0]):20;
+
+		MNKBoard[] boards={MNKBoard.TIC_TAC_TOE, new MNKBoard(4, 4, 4), new MNKBoard(5, 5, 4)};
+		int[] depths={Integer.MAX_VALUE, 8, 6};
+
+		System.out.println("board,depth,opponent,side,games,wins,draws,losses,nodes,nodes_per_second,tt_probes,tt_hits,tt_hit_rate");
+		for(int b=0;b<boards.length;b++)
+			for(String opponent: new String[] {"agg", "def"})
+				for(char side: new char[] {'X', 'O'})
+				{
+					AlphaBetaAgent agent=new AlphaBetaAgent(depths[b], 20);
+					int[] counts=new int[4];
+					for(int i=0;i<games;i++)
+					{
+						Agent other=Tournament.newAgent(opponent);
+						Agent x=(side=='X')?agent:other;
+						Agent o=(side=='X')?other:agent;
+						Game g=(boards[b]==MNKBoard.TIC_TAC_TOE)?new Game(x, o):new MNKGame(boards[b], x, o);
+						while (!g.isTerminal())
+							g.executeMove(g.whoseTurn.getMove(g));
+
+						counts[g.getState()]++;
+					}
+
+					int wins=counts[(side=='X')?Game.X_WON:Game.O_WON];
+					int losses=counts[(side=='X')?Game.O_WON:Game.X_WON];
+					TranspositionTable table=agent.getTable();
+					MNKBoard board=boards[b];
+					System.out.println(board.m+"x"+board.n+"x"+board.k+","+((depths[b]==Integer.MAX_VALUE)?"full":depths[b])+","+opponent+","+side+","+games
+						+","+wins+","+counts[Game.DRAW]+","+losses+","+agent.getNodes()+","+Math.round(agent.getNodesPerSecond())
+						+","+table.getProbes()+","+table.getHits()+","+String.format("%.4f", table.getHitRate()));
+				}
+	}
+
+}
@@ -0,0 +1,289 @@
+package ticTacToe;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A primitive Q-Table: the q-values of all states in a {@link StateIndex} are stored in one flat {@code double[]}, where
+ * Q(s,a) lives at {@code stateId*9+cell} and {@code cell} is {@code 3*x+y} for a move to (x,y). Nothing is boxed or hashed
+ * on the update path, and {@link #maxQ} / {@link #argmaxQ} scan the legal cells of a state without allocating.
+ *
+ * All q-values start at 0. See {@link QTable} for the map-based API on top of this table.
+ *
+ * The table also keeps the greedy cell of every state, i.e. its {@link #argmaxQ}, up to date: every update of a q-value
+ * only re-examines the state it belongs to, so the greedy policy ({@link #getGreedyCell}, {@link GreedyPolicy}) is always
+ * available without scanning the table.
+ *
+ * If the index is symmetric (see {@link StateIndex#isSymmetric()}), the cells of each state are those of its canonical
+ * game. The methods taking a {@link Game} map cells to and from the game's own orientation; the ones taking a state id
+ * work on the canonical cells, see {@link #tableCell}.
+ *
+ */
+public class ArrayQTable {
+
+	/**
+	 * the number of q-values stored per state, one per cell.
+	 */
+	public static final int CELLS=9;
+
+	/**
+	 * atomic access to the elements of {@link #q}, for {@link #blendQValue}
+	 */
+	private static final VarHandle Q=MethodHandles.arrayElementVarHandle(double[].class);
+
+	/**
+	 * the index giving the state ids
+	 */
+	final StateIndex index;
+
+	/**
+	 * the q-values, {@link #CELLS} per state
+	 */
+	final double[] q;
+
+	/**
+	 * the cells that can be played in each state, see {@link #legalCells(Game)}
+	 */
+	final short[] legal;
+
+	/**
+	 * the greedy cell of each state: its {@link #argmaxQ} over its {@link #legal} cells, or -1 if it has none.
+	 */
+	final byte[] greedy;
+
+	public ArrayQTable(StateIndex index)
+	{
+		this.index=index;
+		this.q=new double[index.size()*CELLS];
+		this.legal=new short[index.size()];
+		this.greedy=new byte[index.size()];
+		for(int id=0;id<index.size();id++)
+		{
+			legal[id]=(short) legalCells(index.getGame(id));
+			greedy[id]=(byte) argmaxQ(id, legal[id]);
+		}
+	}
+
+	public StateIndex getIndex()
+	{
+		return index;
+	}
+
+	/**
+	 *
+	 * @param stateId
+	 * @param cell
+	 * @return the q value of playing into {@code cell} in state {@code stateId}
+	 */
+	public double getQValue(int stateId, int cell)
+	{
+		return q[stateId*CELLS+cell];
+	}
+
+	/**
+	 * Sets the q value of playing into {@code cell} in state {@code stateId} to {@code v}
+	 * @param stateId
+	 * @param cell
+	 * @param v
+	 */
+	public void setQValue(int stateId, int cell, double v)
+	{
+		int i=stateId*CELLS+cell;
+		double old=q[i];
+		q[i]=v;
+		updateGreedy(stateId, cell, old, v);
+	}
+
+	/**
+	 * Updates the greedy cell of {@code stateId} after the q value of {@code cell} changed from {@code old} to {@code v},
+	 * with the same tie breaking as {@link #argmaxQ}: only a decrease of the greedy cell's own value needs a rescan.
+	 */
+	private void updateGreedy(int stateId, int cell, double old, double v)
+	{
+		if ((legal[stateId]&(1<<cell))==0)
+			return;
+
+		int best=greedy[stateId];
+		if (cell==best)
+		{
+			if (v<old)
+				greedy[stateId]=(byte) argmaxQ(stateId, legal[stateId]);
+		}
+		else
+		{
+			double max=q[stateId*CELLS+best];
+			if (v>max || (v==max && cell<best))
+				greedy[stateId]=(byte) cell;
+		}
+	}
+
+	/**
+	 * 
+	 * @param stateId
+	 * @return the cell with the highest q value in state {@code stateId}, i.e. its {@link #argmaxQ} over its legal cells,
+	 * or -1 if the state is terminal. This is a lookup, not a scan.
+	 */
+	public int getGreedyCell(int stateId)
+	{
+		return greedy[stateId];
+	}
+
+	/**
+	 * Atomically moves the q value of playing into {@code cell} in state {@code stateId} towards {@code target}:
+	 * Q &lt;- (1-alpha)*Q + alpha*target. This is a lock-free compare-and-set loop, so several threads can update the
+	 * table at the same time without losing updates to the same q-value. The greedy cells are updated without locking,
+	 * so concurrent updates of the same state can leave its greedy cell stale, as Hogwild training already tolerates.
+	 * @param stateId
+	 * @param cell
+	 * @param alpha the learning rate
+	 * @param target
+	 * @return the new q value
+	 */
+	public double blendQValue(int stateId, int cell, double alpha, double target)
+	{
+		int i=stateId*CELLS+cell;
+		double old;
+		double v;
+		do
+		{
+			old=(double) Q.getVolatile(q, i);
+			v=(1-alpha)*old+alpha*target;
+		}
+		while (!Q.compareAndSet(q, i, old, v));
+
+		updateGreedy(stateId, cell, old, v);
+		return v;
+	}
+
+	/**
+	 *
+	 * @param g
+	 * @param m
+	 * @return the q value associated with the q-state {@code (g,m)}
+	 * @throws IllegalArgumentException if {@code g} is not in the index
+	 */
+	public double getQValue(Game g, Move m)
+	{
+		return getQValue(idOf(g), tableCell(g, 3*m.x+m.y));
+	}
+
+	/**
+	 * Sets the q-value of (g,m) to v, like {@link QTable#addQValue}.
+	 * @param g
+	 * @param m
+	 * @param v
+	 * @throws IllegalArgumentException if {@code g} is not in the index
+	 */
+	public void addQValue(Game g, Move m, double v)
+	{
+		setQValue(idOf(g), tableCell(g, 3*m.x+m.y), v);
+	}
+
+	/**
+	 *
+	 * @param stateId
+	 * @param legal a bitboard of the cells to consider, see {@link #legalCells(Game)}
+	 * @return the maximum q value over the {@code legal} cells of state {@code stateId}, or
+	 * {@link Double#NEGATIVE_INFINITY} if there are none.
+	 */
+	public double maxQ(int stateId, int legal)
+	{
+		double max=Double.NEGATIVE_INFINITY;
+		int base=stateId*CELLS;
+		for(;legal!=0;legal&=legal-1)
+		{
+			double v=q[base+Integer.numberOfTrailingZeros(legal)];
+			if (v>max)
+				max=v;
+		}
+
+		return max;
+	}
+
+	/**
+	 *
+	 * @param stateId
+	 * @param legal a bitboard of the cells to consider, see {@link #legalCells(Game)}
+	 * @return the {@code legal} cell with the highest q value in state {@code stateId} (the lowest such cell on ties), or
+	 * -1 if there are none.
+	 */
+	public int argmaxQ(int stateId, int legal)
+	{
+		double max=Double.NEGATIVE_INFINITY;
+		int best=-1;
+		int base=stateId*CELLS;
+		for(;legal!=0;legal&=legal-1)
+		{
+			int cell=Integer.numberOfTrailingZeros(legal);
+			if (q[base+cell]>max)
+			{
+				max=q[base+cell];
+				best=cell;
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Same as {@link #maxQ(int, int)} over the moves in {@link Game#getPossibleMoves()}
+	 * @param g
+	 * @return
+	 */
+	public double maxQ(Game g)
+	{
+		int legal=legalCells(g);
+		if (index.isSymmetric())
+			legal=Symmetry.transformBits(g.canonicalTransform(), legal);
+
+		return maxQ(idOf(g), legal);
+	}
+
+	/**
+	 * Same as {@link #argmaxQ(int, int)} over the moves in {@link Game#getPossibleMoves()}, looked up in the greedy cells.
+	 * @param g
+	 * @return
+	 */
+	public int argmaxQ(Game g)
+	{
+		int cell=getGreedyCell(idOf(g));
+		if (!index.isSymmetric() || cell<0)
+			return cell;
+
+		return Symmetry.inverseCell(g.canonicalTransform(), cell);
+	}
+
+	/**
+	 *
+	 * @param g
+	 * @param cell a cell of {@code g}
+	 * @return the cell of the table (i.e. of the canonical game if the index is symmetric) that {@code cell} maps to.
+	 */
+	public int tableCell(Game g, int cell)
+	{
+		if (!index.isSymmetric())
+			return cell;
+
+		return Symmetry.transformCell(g.canonicalTransform(), cell);
+	}
+
+	/**
+	 *
+	 * @param g
+	 * @return the bitboard of the cells the side to move can play in, i.e. the moves in {@link Game#getPossibleMoves()}
+	 */
+	public static int legalCells(Game g)
+	{
+		return g.isTerminal()?0:g.emptyCells();
+	}
+
+	private int idOf(Game g)
+	{
+		int id=index.getId(g);
+		if (id==StateIndex.NO_ID)
+			throw new IllegalArgumentException("State not in the q-table:"+g);
+
+		return id;
+	}
+
+}
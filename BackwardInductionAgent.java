@@ -0,0 +1,169 @@
+package ticTacToe;
+
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An agent that solves the {@link TTTMDP} exactly in a single backward pass (backward induction), instead of iterating
+ * to a fixed point like the {@link ValueIterationAgent} and {@link PolicyIterationAgent}.
+ *
+ * Every move adds a piece to the board, so the states form a DAG ordered by the number of pieces on the board: all the
+ * successors of a state have more pieces than it. The states are therefore layered by piece count, and backed up from
+ * the fullest boards (terminal states) down to the empty board. When a state is backed up the values of all its
+ * successors are already final, so each state needs exactly one backup.
+ *
+ */
+public class BackwardInductionAgent extends Agent {
+
+	/**
+	 * the discount factor
+	 */
+	double discount=0.9;
+
+	/**
+	 * the MDP model
+	 */
+	TTTMDP mdp;
+
+	/**
+	 * the dense index of the states, see {@link StateIndex}
+	 */
+	StateIndex index;
+
+	/**
+	 * the {@link #mdp} compiled over {@link #index}
+	 */
+	CompiledMDP model;
+
+	/**
+	 * the optimal values of the states, by state id
+	 */
+	double[] values;
+
+	/**
+	 * The number of Bellman backups performed by the last call to {@link #train}: one per state.
+	 */
+	long backups;
+
+	/**
+	 * Solves the default mdp and sets the agent's policy
+	 */
+	public BackwardInductionAgent()
+	{
+		this(0.9, new TTTMDP());
+	}
+
+	public BackwardInductionAgent(double discountFactor)
+	{
+		this(discountFactor, new TTTMDP());
+	}
+
+	/**
+	 * Use this constructor to set the various parameters of the Tic-Tac-Toe MDP
+	 * @param discountFactor
+	 * @param winningReward
+	 * @param losingReward
+	 * @param livingReward
+	 * @param drawReward
+	 */
+	public BackwardInductionAgent(double discountFactor, double winningReward, double losingReward, double livingReward, double drawReward)
+	{
+		this(discountFactor, new TTTMDP(winningReward, losingReward, livingReward, drawReward));
+	}
+
+	private BackwardInductionAgent(double discountFactor, TTTMDP mdp)
+	{
+		super();
+		this.discount=discountFactor;
+		this.mdp=mdp;
+		List<Game> allGames=Game.generateAllValidGames('X');//all valid games where it is X's turn, or it's terminal.
+		this.index=new StateIndex(allGames);
+		this.model=mdp.compile(index);
+		train();
+	}
+
+	/**
+	 *
+	 * @return the state ids ordered by decreasing number of pieces on the board, i.e. a reverse topological order of
+	 * the game DAG.
+	 */
+	int[] layeredStates()
+	{
+		int n=index.size();
+		//counting sort by piece count: start[c] is where the layer with 9-c pieces begins.
+		int[] start=new int[11];
+		for(int s=0;s<n;s++)
+			start[10-pieces(s)]++;
+
+		for(int c=1;c<start.length;c++)
+			start[c]+=start[c-1];
+
+		int[] order=new int[n];
+		int[] next=Arrays.copyOf(start, 10);
+		for(int s=0;s<n;s++)
+			order[next[9-pieces(s)]++]=s;
+
+		return order;
+	}
+
+	private int pieces(int s)
+	{
+		Game g=index.getGame(s);
+		return Integer.bitCount(g.xBits|g.oBits);
+	}
+
+	/**
+	 * Computes the optimal values in one backward pass over {@link #layeredStates()}, then sets the agent's policy to the
+	 * greedy policy with respect to them.
+	 */
+	public void train()
+	{
+		values=new double[index.size()];
+		backups=0;
+		for(int s: layeredStates())
+		{
+			values[s]=model.backup(s, values, discount);
+			backups++;
+		}
+
+		this.policy=extractPolicy();
+	}
+
+	/**
+	 *
+	 * @return the greedy policy according to {@link #values}
+	 */
+	public Policy extractPolicy()
+	{
+		Policy p=new Policy();
+		for(int s=0;s<values.length;s++)
+		{
+			int a=model.bestAction(s, values, discount);
+			if (a>=0)
+				p.policy.put(index.getGame(s), model.getMove(a));
+		}
+
+		return p;
+	}
+
+	/**
+	 *
+	 * @return the number of Bellman backups performed by the last call to {@link #train}
+	 */
+	public long getBackups()
+	{
+		return backups;
+	}
+
+	public static void main(String a[]) throws IllegalMoveException
+	{
+		//Test method to play the agent against a human agent.
+		BackwardInductionAgent agent=new BackwardInductionAgent();
+		HumanAgent d=new HumanAgent();
+
+		Game g=new Game(agent, d, d);
+		g.playOut();
+	}
+
+}
@@ -0,0 +1,202 @@
+package ticTacToe;
+
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A batch of independent {@link TTTEnvironment}s stepped in lockstep: the RL agent plays X in every game, and the
+ * opponent in every game is a random player, as in the default {@link TTTEnvironment}.
+ *
+ * The games are stored as structure-of-arrays primitives rather than {@link Game} objects: game {@code i} is the bitboards
+ * {@code xBits[i]} and {@code oBits[i]} (see {@link Game#xBits}), always with X to move. {@link #step} takes one cell per
+ * game, plays it and the opponent's reply, and leaves the reward of the step in {@code rewards[i]}, and whether the game
+ * ended in {@code done[i]}. A game that ends is reset to the empty board straight away (auto-reset), so every game in the
+ * batch is always ready for the next step. Nothing is allocated after construction: the opponent's random numbers for the
+ * whole batch are drawn in bulk into a reused array.
+ *
+ */
+public class BatchTTTEnvironment {
+
+	/**
+	 * the number of games in the batch
+	 */
+	final int size;
+
+	/**
+	 * the boards of the games, with X to move
+	 */
+	final int[] xBits;
+	final int[] oBits;
+
+	/**
+	 * the reward received by each game in the last step
+	 */
+	final double[] rewards;
+
+	/**
+	 * whether each game ended in the last step (and was reset)
+	 */
+	final boolean[] done;
+
+	/**
+	 * how each game ended in the last step: {@link Game#X_WON}, {@link Game#O_WON} or {@link Game#DRAW}, or
+	 * {@link Game#ONGOING} if it didn't.
+	 */
+	final int[] outcomes;
+
+	/**
+	 * the opponent's random numbers for the current step, one per game
+	 */
+	final int[] draws;
+
+	final SplittableRandom random;
+
+	double winReward=10.0;
+	double loseReward=-50.0;
+	double livingReward=-1.00;
+	double drawReward=0.0;
+
+	public BatchTTTEnvironment(int size)
+	{
+		this(size, System.nanoTime());
+	}
+
+	/**
+	 *
+	 * @param size the number of games in the batch
+	 * @param seed the seed of the opponent's random moves
+	 */
+	public BatchTTTEnvironment(int size, long seed)
+	{
+		if (size<1)
+			throw new IllegalArgumentException("The batch should have at least one game");
+
+		this.size=size;
+		this.xBits=new int[size];
+		this.oBits=new int[size];
+		this.rewards=new double[size];
+		this.done=new boolean[size];
+		this.outcomes=new int[size];
+		this.draws=new int[size];
+		this.random=new SplittableRandom(seed);
+	}
+
+	public BatchTTTEnvironment(int size, long seed, double winReward, double loseReward, double livingReward, double drawReward)
+	{
+		this(size, seed);
+		this.winReward=winReward;
+		this.loseReward=loseReward;
+		this.livingReward=livingReward;
+		this.drawReward=drawReward;
+	}
+
+	/**
+	 * Resets every game to the empty board
+	 */
+	public void reset()
+	{
+		Arrays.fill(xBits, 0);
+		Arrays.fill(oBits, 0);
+		Arrays.fill(rewards, 0.0);
+		Arrays.fill(done, false);
+		Arrays.fill(outcomes, Game.ONGOING);
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 *
+	 * @param i
+	 * @return the bitboard of the cells X can play in game {@code i}
+	 */
+	public int legalCells(int i)
+	{
+		return ~(xBits[i]|oBits[i])&Game.FULL;
+	}
+
+	/**
+	 *
+	 * @param i
+	 * @return the {@link Game#hashCode} of game {@code i}
+	 */
+	public int getHash(int i)
+	{
+		return Game.hashOf(xBits[i], oBits[i], Game.X_SIDE);
+	}
+
+	/**
+	 * Plays X into {@code cells[i]} ({@code 3*x+y}) in every game {@code i}, then the opponent's random reply in the games
+	 * that are still ongoing. Sets {@link #rewards}, {@link #done} and {@link #outcomes}, and resets the games that ended.
+	 * The rewards are the same as in {@link TTTEnvironment#executeMove}.
+	 * @param cells one cell per game
+	 * @throws IllegalMoveException if one of the cells is not empty
+	 */
+	public void step(int[] cells) throws IllegalMoveException
+	{
+		for(int i=0;i<size;i++)
+			draws[i]=random.nextInt();
+
+		for(int i=0;i<size;i++)
+		{
+			int x=xBits[i];
+			int o=oBits[i];
+			if (cells[i]<0 || cells[i]>8 || ((x|o)&(1<<cells[i]))!=0)
+				throw new IllegalMoveException("Illegal Move: cell "+cells[i]+" in game "+i);
+
+			x|=1<<cells[i];
+			int state=Game.evaluate(x, o);
+			if (state==Game.ONGOING)
+			{
+				//the opponent plays a uniformly random empty cell
+				int empty=~(x|o)&Game.FULL;
+				int n=(int) (((draws[i]&0xFFFFFFFFL)*Integer.bitCount(empty))>>>32);
+				o|=1<<nthCell(empty, n);
+				state=Game.evaluate(x, o);
+			}
+
+			outcomes[i]=state;
+			done[i]=(state!=Game.ONGOING);
+			switch(state)
+			{
+			case Game.X_WON:
+				rewards[i]=winReward;
+				break;
+			case Game.O_WON:
+				rewards[i]=loseReward;
+				break;
+			case Game.DRAW:
+				rewards[i]=drawReward;
+				break;
+			default:
+				rewards[i]=livingReward;
+			}
+
+			if (done[i])
+			{
+				x=0;
+				o=0;
+			}
+			xBits[i]=x;
+			oBits[i]=o;
+		}
+	}
+
+	/**
+	 *
+	 * @param cells a bitboard
+	 * @param n
+	 * @return the {@code n}-th (from 0) cell set in {@code cells}, counting from cell 0
+	 */
+	static int nthCell(int cells, int n)
+	{
+		for(;n>0;n--)
+			cells&=cells-1;
+
+		return Integer.numberOfTrailingZeros(cells);
+	}
+
+}
@@ -0,0 +1,32 @@
+package ticTacToe;
+
+
+import java.util.HashMap;
+
+/**
+ * A policy over canonical games only (see {@link Game#canonical()}). Any game is looked up through its canonical
+ * representative, and the move found is transformed back, so moves are always returned in the orientation of the game
+ * passed to {@link #getMove}.
+ *
+ */
+public class CanonicalPolicy extends Policy {
+
+	/**
+	 *
+	 * @param policy a map from canonical games to their moves
+	 */
+	public CanonicalPolicy(HashMap<Game, Move> policy) {
+		super(policy);
+	}
+
+	@Override
+	public Move getMove(Game g) {
+		int t=g.canonicalTransform();
+		Move m=super.getMove(g.transform(t));
+		if (m==null)
+			return null;
+
+		return Symmetry.inverseMove(m, t);
+	}
+
+}
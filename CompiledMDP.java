@@ -0,0 +1,284 @@
+package ticTacToe;
+
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A {@link TTTMDP} compiled into flat arrays, in compressed sparse row (CSR) form, over the states of a {@link StateIndex}.
+ * Every (state, move) pair is enumerated, and its transitions generated with {@link TTTMDP#generateTransitions}, exactly
+ * once when the model is built. Planners can then run Bellman backups by reading primitive arrays, without generating
+ * lists of {@link TransitionProb}s, {@link Outcome}s or {@link Game}s.
+ *
+ * The layout is:
+ * <ul>
+ * <li>the actions (moves) of state {@code s} are the action ids {@code actionStart[s]} to {@code actionStart[s+1]-1},
+ * and action {@code a} plays into cell {@code actionCell[a]} (i.e. {@code 3*x+y}). Terminal states have no actions.</li>
+ * <li>the transitions of action {@code a} are {@code transitionStart[a]} to {@code transitionStart[a+1]-1}. Transition
+ * {@code t} leads to state id {@code target[t]} with probability {@code prob[t]} and reward {@code reward[t]}.</li>
+ * </ul>
+ * Actions are in the order of {@link Game#getPossibleMoves()} and transitions in the order returned by the mdp, so
+ * backups sum in the same order as when using {@link TTTMDP#generateTransitions} directly.
+ *
+ */
+public class CompiledMDP {
+
+	/**
+	 * the states of the model
+	 */
+	final StateIndex index;
+
+	/**
+	 * per state: the first action id of the state, plus a final entry with the total number of actions.
+	 */
+	final int[] actionStart;
+
+	/**
+	 * per action: the cell played
+	 */
+	final int[] actionCell;
+
+	/**
+	 * per action: the first transition of the action, plus a final entry with the total number of transitions.
+	 */
+	final int[] transitionStart;
+
+	/**
+	 * per transition: the target state id, probability and reward
+	 */
+	final int[] target;
+	final double[] prob;
+	final double[] reward;
+
+	/**
+	 * The reverse graph, in the same CSR form: the states with a transition into state {@code s} are
+	 * {@code predecessors[predecessorStart[s]]} to {@code predecessors[predecessorStart[s+1]-1]}, each listed once.
+	 * Built on the first call to {@link #buildPredecessors()}.
+	 */
+	int[] predecessorStart;
+	int[] predecessors;
+
+	/**
+	 * Compiles {@code mdp} over the states in {@code index}. Only states where it is X's turn get actions, as the mdp is
+	 * always played as X. All target states must be in the index.
+	 * @param mdp
+	 * @param index
+	 */
+	public CompiledMDP(TTTMDP mdp, StateIndex index)
+	{
+		this.index=index;
+		int n=index.size();
+		this.actionStart=new int[n+1];
+
+		int[] cells=new int[n*ArrayQTable.CELLS];
+		int[] transStart=new int[n*ArrayQTable.CELLS+1];
+		int[] targets=new int[16];
+		double[] probs=new double[16];
+		double[] rewards=new double[16];
+
+		int a=0;
+		int t=0;
+		for(int s=0;s<n;s++)
+		{
+			actionStart[s]=a;
+			Game g=index.getGame(s);
+			if (g.isTerminal() || g.whoseTurn.getName()!='X')
+				continue;
+
+			for(Move m: g.getPossibleMoves())
+			{
+				cells[a]=3*m.x+m.y;
+				transStart[a]=t;
+				List<TransitionProb> transitions=mdp.generateTransitions(g, m);
+				if (t+transitions.size()>targets.length)
+				{
+					int capacity=Math.max(2*targets.length, t+transitions.size());
+					targets=Arrays.copyOf(targets, capacity);
+					probs=Arrays.copyOf(probs, capacity);
+					rewards=Arrays.copyOf(rewards, capacity);
+				}
+				for(TransitionProb tp: transitions)
+				{
+					int id=index.getId(tp.outcome.sPrime);
+					if (id==StateIndex.NO_ID)
+						throw new IllegalStateException("Transition to a state not in the index:"+tp.outcome.sPrime);
+
+					targets[t]=id;
+					probs[t]=tp.prob;
+					rewards[t]=tp.outcome.localReward;
+					t++;
+				}
+				a++;
+			}
+		}
+		actionStart[n]=a;
+		transStart[a]=t;
+
+		this.actionCell=Arrays.copyOf(cells, a);
+		this.transitionStart=Arrays.copyOf(transStart, a+1);
+		this.target=Arrays.copyOf(targets, t);
+		this.prob=Arrays.copyOf(probs, t);
+		this.reward=Arrays.copyOf(rewards, t);
+	}
+
+	/**
+	 * Builds the reverse graph ({@link #predecessors}) if it hasn't been built yet.
+	 */
+	public synchronized void buildPredecessors()
+	{
+		if (predecessors!=null)
+			return;
+
+		int n=index.size();
+		int[] start=new int[n+1];
+		int[] lastSource=new int[n];
+		Arrays.fill(lastSource, -1);
+
+		//first count the distinct predecessors of every state, then fill them in.
+		for(int s=0;s<n;s++)
+			for(int t=transitionStart[actionStart[s]];t<transitionStart[actionStart[s+1]];t++)
+				if (lastSource[target[t]]!=s)
+				{
+					lastSource[target[t]]=s;
+					start[target[t]+1]++;
+				}
+
+		for(int s=0;s<n;s++)
+			start[s+1]+=start[s];
+
+		int[] preds=new int[start[n]];
+		int[] next=Arrays.copyOf(start, n);
+		Arrays.fill(lastSource, -1);
+		for(int s=0;s<n;s++)
+			for(int t=transitionStart[actionStart[s]];t<transitionStart[actionStart[s+1]];t++)
+				if (lastSource[target[t]]!=s)
+				{
+					lastSource[target[t]]=s;
+					preds[next[target[t]]++]=s;
+				}
+
+		this.predecessorStart=start;
+		this.predecessors=preds;
+	}
+
+	public StateIndex getIndex()
+	{
+		return index;
+	}
+
+	public int numStates()
+	{
+		return index.size();
+	}
+
+	public int numActions()
+	{
+		return actionCell.length;
+	}
+
+	/**
+	 *
+	 * @param s
+	 * @return the id of the first action of state {@code s}
+	 */
+	public int firstAction(int s)
+	{
+		return actionStart[s];
+	}
+
+	/**
+	 *
+	 * @param s
+	 * @return one past the id of the last action of state {@code s}
+	 */
+	public int endAction(int s)
+	{
+		return actionStart[s+1];
+	}
+
+	/**
+	 *
+	 * @param a
+	 * @return the cell ({@code 3*x+y}) played by action {@code a}
+	 */
+	public int getCell(int a)
+	{
+		return actionCell[a];
+	}
+
+	/**
+	 *
+	 * @param a
+	 * @return action {@code a} as a {@link Move} by X
+	 */
+	public Move getMove(int a)
+	{
+		return Move.of('X', actionCell[a]);
+	}
+
+	/**
+	 * Q(s,a) = Sum_target [ T(s,a,target) * (R + gamma * V(target)) ]
+	 * @param a the action id
+	 * @param values the state values, by state id
+	 * @param discount
+	 * @return the q value of action {@code a} under {@code values}
+	 */
+	public double qValue(int a, double[] values, double discount)
+	{
+		double q=0.0;
+		for(int t=transitionStart[a];t<transitionStart[a+1];t++)
+			q+=prob[t]*(reward[t]+discount*values[target[t]]);
+
+		return q;
+	}
+
+	/**
+	 * The Bellman optimality backup V(s)=max_a Q(s,a). Terminal states have a value of 0.
+	 * @param s the state id
+	 * @param values the state values, by state id
+	 * @param discount
+	 * @return the backed up value of state {@code s}
+	 */
+	public double backup(int s, double[] values, double discount)
+	{
+		int end=actionStart[s+1];
+		if (actionStart[s]==end)
+			return 0.0;
+
+		double max=Double.NEGATIVE_INFINITY;
+		for(int a=actionStart[s];a<end;a++)
+		{
+			double q=qValue(a, values, discount);
+			if (q>max)
+				max=q;
+		}
+
+		return max;
+	}
+
+	/**
+	 *
+	 * @param s the state id
+	 * @param values the state values, by state id
+	 * @param discount
+	 * @return the action of state {@code s} with the highest q value (the first one on ties), or -1 if {@code s} has no
+	 * actions.
+	 */
+	public int bestAction(int s, double[] values, double discount)
+	{
+		double max=Double.NEGATIVE_INFINITY;
+		int best=-1;
+		for(int a=actionStart[s];a<actionStart[s+1];a++)
+		{
+			double q=qValue(a, values, discount);
+			if (q>max)
+			{
+				max=q;
+				best=a;
+			}
+		}
+
+		return best;
+	}
+
+}
@@ -0,0 +1,45 @@
+package ticTacToe;
+
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+
+/**
+ * A {@link TrainingListener} that writes every metric point as a line of CSV: {@code metric,step,value}, after a header
+ * line.
+ *
+ */
+public class CsvTrainingListener implements TrainingListener, Closeable {
+
+	final PrintStream out;
+
+	public CsvTrainingListener(PrintStream out)
+	{
+		this.out=out;
+		out.println("metric,step,value");
+	}
+
+	/**
+	 * Writes to {@code file}, replacing it if it exists. Call {@link #close()} once training is over.
+	 * @param file
+	 * @throws FileNotFoundException if the file can't be created
+	 */
+	public CsvTrainingListener(String file) throws FileNotFoundException
+	{
+		this(new PrintStream(file));
+	}
+
+	@Override
+	public synchronized void record(String metric, long step, double value)
+	{
+		out.println(metric+","+step+","+value);
+	}
+
+	@Override
+	public void close()
+	{
+		out.close();
+	}
+
+}
@@ -1,7 +1,6 @@
 package ticTacToe;
 
 
-import java.util.List;
 import java.util.Random;
 /**
  * A defensive policy: if there is a move to block the opponent's X's or O's in a row, this policy finds it and returns it. Otherwise
@@ -11,30 +10,41 @@ import java.util.Random;
  */
 public class DefensivePolicy extends Policy {
 	
+	/**
+	 * whether to print the kind of move played (defensive or random)
+	 */
+	boolean verbose=true;
+	
 public Move getMove(Game g) {
 		
 		
-		List<Move> moves=g.getPossibleMovesByOpponent();
+		int n=g.getColumns();
+		char opponent=(g.whoseTurn.getName()=='X')?'O':'X';
+		long empty=~(g.getXBits()|g.getOBits())&g.getShape().full;
 		
-		for(Move m: moves)
+		Game resulting=g.clone();
+		for(long m=empty;m!=0;m&=m-1)
 		{
-			Game resulting=g.clone();
-			resulting.getBoard()[m.x][m.y]=m.who.getName();
-			resulting.evaluateGameState();
-			if (resulting.getState()==Game.X_WON||resulting.getState()==Game.O_WON)
+			int cell=Long.numberOfTrailingZeros(m);
+			//play the opponent's piece in place, check the result, then take it back.
+			resulting.setCell(cell/n, cell%n, opponent);
+			int state=resulting.evaluateGameState();
+			resulting.setCell(cell/n, cell%n, ' ');
+			if (state==Game.X_WON||state==Game.O_WON)
 			{
-				Move newMove=new Move(m.who.getName()=='X'?'O':'X', m.x,m.y);
-				System.out.println("Playing defensive move");
-				return newMove;
+				if (verbose)
+					System.out.println("Playing defensive move");
+				return g.moveOf(cell);
 			}
 		}
 		
 		Random r=new Random();
-		System.out.println("Playing random move");
-		Move randomMove=moves.get(r.nextInt(moves.size()));
-		Move myMove=new Move(randomMove.who.getName()=='X'?'O':'X', randomMove.x,randomMove.y);
+		if (verbose)
+			System.out.println("Playing random move");
+		for(int i=r.nextInt(Long.bitCount(empty));i>0;i--)
+			empty&=empty-1;
 		
-		return myMove;
+		return g.moveOf(Long.numberOfTrailingZeros(empty));
 		
 	}
 
@@ -2,6 +2,7 @@ package ticTacToe;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -36,7 +37,59 @@ public class Game {
 	 */
 	int state = 0;
 
-	char[][] board = new char[3][3];
+	/**
+	 * Side-to-move values for {@link #side}
+	 */
+	static final int X_SIDE = 0;
+	static final int O_SIDE = 1;
+
+	/**
+	 * Bitboard of the cells occupied by X. Cell (x,y) is bit {@code 3*x+y}, so
+	 * bit 0 is the top left corner and bit 8 the bottom right one.
+	 */
+	int xBits = 0;
+
+	/**
+	 * Bitboard of the cells occupied by O, indexed as {@link #xBits}.
+	 */
+	int oBits = 0;
+
+	/**
+	 * The side-to-move bit: {@link #X_SIDE} or {@link #O_SIDE}. This is the
+	 * underlying representation of {@link #whoseTurn}, and the two are always
+	 * updated together through {@link #setSide(int)}.
+	 */
+	int side = X_SIDE;
+
+	/**
+	 * The cached value of {@link #hashCode()}. It is kept up to date by every
+	 * method that changes the board or the side to move.
+	 */
+	int hash = 1;
+
+	/**
+	 * The weight of each cell's base 3 digit in {@link #hashCode()}: cell 0 is the
+	 * most significant digit (3^9) and the side to move the least significant one.
+	 */
+	static final int[] CELL_WEIGHT = { 19683, 6561, 2187, 729, 243, 81, 27, 9, 3 };
+
+	/**
+	 * The number of distinct hashes, 3^10. Valid hashes are below this.
+	 */
+	static final int NUM_HASHES = 59049;
+
+	/**
+	 * BITS_HASH[b] is the sum of the {@link #CELL_WEIGHT}s of the cells in bitboard b, so that the hash of a game is
+	 * {@code BITS_HASH[xBits] + 2 * BITS_HASH[oBits] + side + 1}.
+	 */
+	static final int[] BITS_HASH = new int[512];
+
+	static {
+		for (int bits = 1; bits < BITS_HASH.length; bits++) {
+			int cell = Integer.numberOfTrailingZeros(bits);
+			BITS_HASH[bits] = BITS_HASH[bits & (bits - 1)] + CELL_WEIGHT[cell];
+		}
+	}
 
 	/**
 	 * the X agent
@@ -78,9 +131,9 @@ public class Game {
 		if (whoseTurn != 'X' && whoseTurn != 'O')
 			throw new IllegalArgumentException("Argument should be either 'X' or 'O'");
 		else if (whoseTurn == 'X')
-			this.whoseTurn = x;
+			setSide(X_SIDE);
 		else
-			this.whoseTurn = o;
+			setSide(O_SIDE);
 
 	}
 
@@ -101,6 +154,7 @@ public class Game {
 			throw new IllegalArgumentException("Agent with current turn is not one of the game agents");
 
 		this.whoseTurn = whoseTurn;
+		this.side = (whoseTurn == x) ? X_SIDE : O_SIDE;
 
 		initBoard();
 
@@ -116,18 +170,163 @@ public class Game {
 		this.whoseTurn = g.whoseTurn;
 		// WARNING: Currently Agents are not deep copied
 
-		for (int i = 0; i < 3; i++)
-			for (int j = 0; j < 3; j++)
-				this.board[i][j] = g.board[i][j];
+		this.xBits = g.xBits;
+		this.oBits = g.oBits;
+		this.side = g.side;
+		this.state = g.state;
+		this.hash = g.hash;
+
+	}
 
+	/**
+	 * @return the number of rows of the board, 3 for Tic-Tac-Toe. See {@link MNKGame}
+	 */
+	public int getRows() {
+		return 3;
+	}
+
+	/**
+	 * @return the number of columns of the board, 3 for Tic-Tac-Toe. See {@link MNKGame}
+	 */
+	public int getColumns() {
+		return 3;
+	}
+
+	/**
+	 * @return the board of the game, {@link MNKBoard#TIC_TAC_TOE}. See {@link MNKGame}
+	 */
+	public MNKBoard getShape() {
+		return MNKBoard.TIC_TAC_TOE;
+	}
+
+	/**
+	 * @return the bitboard of the cells occupied by X, where cell (x,y) is bit
+	 *         {@code getShape().cell(x,y)}
+	 */
+	public long getXBits() {
+		return xBits;
+	}
+
+	/**
+	 * @return the bitboard of the cells occupied by O, see {@link #getXBits()}
+	 */
+	public long getOBits() {
+		return oBits;
+	}
+
+	/**
+	 * @param x the X agent
+	 * @param o the O agent
+	 * @return a new game on the same board as this one, where x plays first
+	 */
+	public Game newGame(Agent x, Agent o) {
+		return new Game(x, o);
 	}
 
 	public void initBoard() {
-		// fill the board with e's (empty cells)
-		for (int i = 0; i < 3; i++)
-			for (int j = 0; j < 3; j++)
-				board[i][j] = ' ';
+		// all cells empty
+		xBits = 0;
+		oBits = 0;
+		hash = side + 1;
+
+	}
+
+	/**
+	 * Sets the side to move, keeping {@link #whoseTurn} in sync with it.
+	 * 
+	 * @param side either {@link #X_SIDE} or {@link #O_SIDE}
+	 */
+	void setSide(int side) {
+		this.hash += side - this.side;
+		this.side = side;
+		this.whoseTurn = (side == X_SIDE) ? x : o;
+	}
+
+	/**
+	 * @return the bitboard of the empty cells
+	 */
+	public int emptyCells() {
+		return ~(xBits | oBits) & FULL;
+	}
+
+	/**
+	 * @param x the x coordinate of the cell (between 0 and 2 inclusive)
+	 * @param y the y coordinate of the cell (between 0 and 2 inclusive)
+	 * @return 'X', 'O' or ' ' if the cell is empty
+	 */
+	public char getCell(int x, int y) {
+		int bit = 1 << (3 * x + y);
+		if ((xBits & bit) != 0)
+			return 'X';
+		if ((oBits & bit) != 0)
+			return 'O';
+		return ' ';
+	}
+
+	/**
+	 * Overwrites cell (x,y) with {@code c} without changing whose turn it is or
+	 * re-evaluating the game. This is the equivalent of writing directly into the
+	 * board array.
+	 * 
+	 * @param c 'X', 'O' or ' ' to clear the cell
+	 */
+	void setCell(int x, int y, char c) {
+		int cell = 3 * x + y;
+		int bit = 1 << cell;
+		if ((xBits & bit) != 0)
+			hash -= CELL_WEIGHT[cell];
+		else if ((oBits & bit) != 0)
+			hash -= 2 * CELL_WEIGHT[cell];
+
+		xBits &= ~bit;
+		oBits &= ~bit;
+		if (c == 'X') {
+			xBits |= bit;
+			hash += CELL_WEIGHT[cell];
+		} else if (c == 'O') {
+			oBits |= bit;
+			hash += 2 * CELL_WEIGHT[cell];
+		}
+	}
 
+	/**
+	 * Plays the side to move into {@code cell} (i.e. {@code 3*x+y}) in place,
+	 * passes the turn and re-evaluates the game. No objects are allocated. The
+	 * cell is assumed to be empty: use {@link #executeMove(Move)} for a checked
+	 * move.
+	 * 
+	 * @param cell the cell index, between 0 and 8 inclusive
+	 */
+	public void makeMove(int cell) {
+		int bit = 1 << cell;
+		if (side == X_SIDE)
+			xBits |= bit;
+		else
+			oBits |= bit;
+
+		hash += (side + 1) * CELL_WEIGHT[cell];
+		setSide(side ^ 1);
+		evaluateGameState();
+	}
+
+	/**
+	 * Takes back the last move played into {@code cell} by
+	 * {@link #makeMove(int)}, restoring the previous game exactly. No objects are
+	 * allocated.
+	 * 
+	 * @param cell the cell index, between 0 and 8 inclusive
+	 */
+	public void unmakeMove(int cell) {
+		int bit = ~(1 << cell);
+		setSide(side ^ 1);
+		if (side == X_SIDE)
+			xBits &= bit;
+		else
+			oBits &= bit;
+
+		hash -= (side + 1) * CELL_WEIGHT[cell];
+
+		evaluateGameState();
 	}
 
 	public boolean isLegal(Move m) {
@@ -138,7 +337,7 @@ public class Game {
 			return false;
 		}
 
-		if (board[m.x][m.y] != ' ')
+		if ((emptyCells() & (1 << (3 * m.x + m.y))) == 0)
 			return false;
 
 		return true;
@@ -152,20 +351,11 @@ public class Game {
 	 */
 	public List<Game> getAllSuccessorGames() {
 		List<Game> result = new ArrayList<Game>();
-		for (int i = 0; i < 3; i++)
-			for (int j = 0; j < 3; j++) {
-				if (board[i][j] == ' ') {
-					Game newGame = null;
-					try {
-						newGame = this.simulateMove(whoseTurn.getName(), i, j);
-					} catch (IllegalMoveException e) {
-						System.out.println(e.getMessage());
-						e.printStackTrace();
-					}
-					// System.out.println("Adding:\n"+newGame);
-					result.add(newGame);
-				}
-			}
+		for (int empty = emptyCells(); empty != 0; empty &= empty - 1) {
+			Game newGame = new Game(this);
+			newGame.makeMove(Integer.numberOfTrailingZeros(empty));
+			result.add(newGame);
+		}
 
 		return result;
 
@@ -176,31 +366,81 @@ public class Game {
 	 * or O's turn as specified by {@code xo} argument. NOTE: this method will
 	 * include ALL terminal states in the game.
 	 * 
+	 * The games are the ones reachable by playing from an empty board where X or O
+	 * starts (see {@link Reachable}), so boards that are valid but can't occur in
+	 * a game, e.g. where both X and O have three in a row, are left out. They are
+	 * enumerated once per JVM and shared: the list can't be modified, and the games
+	 * in it shouldn't be.
+	 * 
 	 * @param xo specifies whose turn it should be in the resulting games.
 	 * @return
 	 */
 	public static List<Game> generateAllValidGames(char xo) {
-		List<Game> result = new ArrayList<Game>();
-		// this is the number of possible game hashes (2222222222 in base 3): 59048 -
-		// not all are valid. Here we only return the valid ones.
-		for (int i = 0; i < 59048; i++) {
-			Game g = inverseHash(i);
-			if (g == null)
-				continue;
-
-			if (g.isValid()) {
-				// System.out.println("for:"+i);
-				// System.out.println("got:\n"+g);
-				// System.out.println("turn:"+g.whoseTurn.getName());
-				// System.out.println("--------");
+		if (xo != 'X' && xo != 'O')
+			throw new IllegalArgumentException("Argument should be either 'X' or 'O'");
+
+		return (xo == 'X') ? Reachable.X_GAMES : Reachable.O_GAMES;
+	}
+
+	/**
+	 * The games reachable from an empty board, found by a breadth-first search
+	 * over the game hashes when the class is first used, i.e. once per JVM. Only
+	 * the bitboards are expanded; a {@link Game} is only built for the reachable
+	 * hashes, which are listed in increasing order.
+	 */
+	private static final class Reachable {
+
+		static final List<Game> X_GAMES;
+		static final List<Game> O_GAMES;
+
+		static {
+			boolean[] reached = new boolean[NUM_HASHES];
+			// each queued game is its bitboards and the side to move: xBits | oBits << 9 | side << 18
+			int[] queue = new int[NUM_HASHES];
+			int head = 0;
+			int tail = 0;
+			for (int side = X_SIDE; side <= O_SIDE; side++) {
+				reached[hashOf(0, 0, side)] = true;
+				queue[tail++] = side << 18;
+			}
+
+			while (head < tail) {
+				int packed = queue[head++];
+				int x = packed & FULL;
+				int o = (packed >>> 9) & FULL;
+				int side = packed >>> 18;
+				if (evaluate(x, o) != ONGOING)
+					continue;
+
+				for (int empty = ~(x | o) & FULL; empty != 0; empty &= empty - 1) {
+					int bit = empty & -empty;
+					int nx = (side == X_SIDE) ? x | bit : x;
+					int no = (side == O_SIDE) ? o | bit : o;
+					int h = hashOf(nx, no, side ^ 1);
+					if (!reached[h]) {
+						reached[h] = true;
+						queue[tail++] = nx | no << 9 | (side ^ 1) << 18;
+					}
+				}
+			}
+
+			List<Game> xGames = new ArrayList<Game>();
+			List<Game> oGames = new ArrayList<Game>();
+			for (int h = 0; h < NUM_HASHES; h++) {
+				if (!reached[h])
+					continue;
+
+				Game g = inverseHash(h);
 				g.evaluateGameState();
-				if (g.whoseTurn.getName() == xo || g.isTerminal())
-					result.add(g);
+				if (g.whoseTurn.getName() == 'X' || g.isTerminal())
+					xGames.add(g);
+				if (g.whoseTurn.getName() == 'O' || g.isTerminal())
+					oGames.add(g);
 			}
 
+			X_GAMES = Collections.unmodifiableList(xGames);
+			O_GAMES = Collections.unmodifiableList(oGames);
 		}
-
-		return result;
 	}
 
 	/**
@@ -209,21 +449,41 @@ public class Game {
 	 * @return
 	 */
 	public List<Move> getPossibleMoves() {
-		List<Move> possibleMoves = new ArrayList<Move>();
-		// if it's not our turn then no moves possible.
-		if (getState() != ONGOING)
-			return possibleMoves;
-
-		for (int i = 0; i < 3; i++)
-			for (int j = 0; j < 3; j++) {
-				if (getBoard()[i][j] == ' ')
-					possibleMoves.add(new Move(whoseTurn, i, j));
-			}
+		int legal = legalMoveMask();
+		List<Move> possibleMoves = new ArrayList<Move>(Integer.bitCount(legal));
+		char who = whoseTurn.getName();
+		for (; legal != 0; legal &= legal - 1)
+			possibleMoves.add(Move.of(who, Integer.numberOfTrailingZeros(legal)));
 
 		return possibleMoves;
 
 	}
 
+	/**
+	 * The moves of {@link #getPossibleMoves()} as a bitboard: bit {@code 3*x+y} is
+	 * set if the side to move can play in (x,y). Iterate over it with
+	 * {@link MoveIterator}, or as {@code for (int m = legalMoveMask(); m != 0; m &= m - 1)}
+	 * with {@link Integer#numberOfTrailingZeros(int)} giving the cell, to go
+	 * through the moves without allocating.
+	 * 
+	 * The mask is an int, meant for 3x3 games: see
+	 * {@link MNKGame#legalMoveMask()} for larger boards.
+	 * 
+	 * @return the bitboard of the legal moves, 0 if the game is over
+	 */
+	public int legalMoveMask() {
+		return (state == ONGOING) ? emptyCells() : 0;
+	}
+
+	/**
+	 * @param cell a cell of the board, {@code 3*x+y}
+	 * @return the move of the side to move into {@code cell}: an interned move,
+	 *         see {@link Move#of(char, int)}
+	 */
+	public Move moveOf(int cell) {
+		return Move.of(whoseTurn.getName(), cell);
+	}
+
 	/**
 	 * returns a list of all available moves by the agent whose turn it is NOT. Used
 	 * by the defensive agent.
@@ -231,22 +491,28 @@ public class Game {
 	 * @return
 	 */
 	public List<Move> getPossibleMovesByOpponent() {
-		List<Move> possibleMoves = new ArrayList<Move>();
-		// if it's not our turn then no moves possible.
-		if (getState() != ONGOING)
-			return possibleMoves;
-
-		for (int i = 0; i < 3; i++)
-			for (int j = 0; j < 3; j++) {
-				if (getBoard()[i][j] == ' ')
-					possibleMoves.add(new Move((whoseTurn.getName() == 'X') ? 'O' : 'X', i, j));
-			}
+		int legal = legalMoveMask();
+		List<Move> possibleMoves = new ArrayList<Move>(Integer.bitCount(legal));
+		char opponent = (whoseTurn.getName() == 'X') ? 'O' : 'X';
+		for (; legal != 0; legal &= legal - 1)
+			possibleMoves.add(Move.of(opponent, Integer.numberOfTrailingZeros(legal)));
 
 		return possibleMoves;
 
 	}
 
+	/**
+	 * A read-only view of the bitboards as a 3x3 array of 'X', 'O' and ' '. The
+	 * array is built on every call, so writing into it does not change the game:
+	 * use {@link #executeMove(Move)} or {@link #makeMove(int)} for that.
+	 * 
+	 * @return a fresh copy of the board
+	 */
 	public char[][] getBoard() {
+		char[][] board = new char[3][3];
+		for (int i = 0; i < 3; i++)
+			for (int j = 0; j < 3; j++)
+				board[i][j] = getCell(i, j);
 		return board;
 	}
 
@@ -255,7 +521,7 @@ public class Game {
 		for (int i = 0; i < 3; i++) {
 			result += "|";
 			for (int j = 0; j < 3; j++) {
-				result += board[i][j] + "|";
+				result += getCell(i, j) + "|";
 
 			}
 			result += "\n";
@@ -273,114 +539,63 @@ public class Game {
 	 * @return an integer representing the game state
 	 */
 	public int evaluateGameState() {
+		this.state = evaluate(xBits, oBits);
+		return this.state;
 
-		// checking columns
-		if (board[0][0] != ' ' && board[0][0] == board[0][1] && board[0][1] == board[0][2]) {
-			if (board[0][0] == 'X')
-				this.state = X_WON;
-			else
-				this.state = O_WON;
-
-			return this.state;
-
-		}
-		if (board[1][0] != ' ' && board[1][0] == board[1][1] && board[1][1] == board[1][2]) {
-			if (board[1][0] == 'X')
-				this.state = X_WON;
-			else
-				this.state = O_WON;
-
-			return this.state;
-
-		}
-		if (board[2][0] != ' ' && board[2][0] == board[2][1] && board[2][1] == board[2][2]) {
-			if (board[2][0] == 'X')
-				this.state = X_WON;
-			else
-				this.state = O_WON;
-
-			return this.state;
-
-		}
-
-		// checking rows
-
-		if (board[0][0] != ' ' && board[0][0] == board[1][0] && board[1][0] == board[2][0]) {
-			if (board[0][0] == 'X')
-				this.state = X_WON;
-			else
-				this.state = O_WON;
-
-			return this.state;
-
-		}
-		if (board[0][1] != ' ' && board[0][1] == board[1][1] && board[1][1] == board[2][1]) {
-			if (board[0][1] == 'X')
-				this.state = X_WON;
-			else
-				this.state = O_WON;
-
-			return this.state;
-
-		}
-		if (board[0][2] != ' ' && board[0][2] == board[1][2] && board[1][2] == board[2][2]) {
-			if (board[0][2] == 'X')
-				this.state = X_WON;
-			else
-				this.state = O_WON;
-
-			return this.state;
-
-		}
-
-		// checking diagnols
-
-		if (board[0][0] != ' ' && board[0][0] == board[1][1] && board[1][1] == board[2][2]) {
-			if (board[0][0] == 'X')
-				this.state = X_WON;
-			else
-				this.state = O_WON;
-
-			return this.state;
+	}
 
-		}
+	/**
+	 * The game state of the board given by two bitboards, see
+	 * {@link #evaluateGameState()}
+	 * 
+	 * @param xBits
+	 * @param oBits
+	 * @return one of DRAW, ONGOING, X_WIN or O_WIN
+	 */
+	static int evaluate(int xBits, int oBits) {
+		int xLine = FIRST_LINE[xBits];
+		int oLine = FIRST_LINE[oBits];
+		// when both players have a line (not a valid game), the one found first in
+		// LINES wins, as the line by line check always did.
+		if (xLine < oLine)
+			return X_WON;
+		else if (oLine < xLine)
+			return O_WON;
+		else if ((xBits | oBits) == FULL)
+			return DRAW;
+		else
+			return ONGOING;
+	}
 
-		if (board[2][0] != ' ' && board[2][0] == board[1][1] && board[1][1] == board[0][2]) {
-			if (board[2][0] == 'X')
-				this.state = X_WON;
-			else
-				this.state = O_WON;
+	/**
+	 * The eight winning lines as bitboards: three rows, three columns and the two
+	 * diagonals.
+	 */
+	static final int[] LINES = { 0007, 0070, 0700, 0111, 0222, 0444, 0421, 0124 };
 
-			return this.state;
+	/**
+	 * The bitboard with all nine cells set.
+	 */
+	static final int FULL = 0x1FF;
 
+	/**
+	 * Lookup table indexed by one player's bitboard: the index in {@link #LINES}
+	 * of the first complete line that player occupies, or {@code LINES.length} if
+	 * there is none.
+	 */
+	static final byte[] FIRST_LINE = new byte[FULL + 1];
+
+	static {
+		for (int bits = 0; bits <= FULL; bits++) {
+			int l = 0;
+			while (l < LINES.length && (bits & LINES[l]) != LINES[l])
+				l++;
+			FIRST_LINE[bits] = (byte) l;
 		}
-
-		boolean spacesLeft = false;
-		for (int i = 0; i < 3; i++)
-			for (int j = 0; j < 3; j++) {
-				if (board[i][j] == ' ') {
-					spacesLeft = true;
-					break;
-
-				}
-			}
-
-		if (spacesLeft)
-			this.state = ONGOING;
-		else
-			this.state = DRAW;
-
-		return this.state;
-
 	}
 
 	private int count(char xo) {
-		int count = 0;
-		for (int i = 0; i < 3; i++)
-			for (int j = 0; j < 3; j++)
-				if (board[i][j] == xo)
-					count++;
-		return count;
+		return Integer.bitCount(xo == 'X' ? xBits : oBits);
 	}
 
 	/**
@@ -432,19 +647,14 @@ public class Game {
 		if (whoseTurn == o && m.who.getName() != 'O')
 			throw new IllegalMoveException("it is not o's turn");
 
-		if (board[m.x][m.y] != ' ')
+		if (m.x > 2 || m.y > 2)
+			throw new IllegalMoveException("Invalid move. The location (" + m.x + "," + m.y + ") is not on the board");
+
+		if (getCell(m.x, m.y) != ' ')
 			throw new IllegalMoveException("Invalid move. The square is " + m);
 
 		Game copy = clone();
-		copy.board[m.x][m.y] = m.who.getName();
-		if (m.who.getName() == 'X')
-			copy.whoseTurn = copy.o;
-		else if (m.who.getName() == 'O')
-			copy.whoseTurn = copy.x;
-		else
-			throw new IllegalArgumentException();
-
-		copy.evaluateGameState();
+		copy.makeMove(3 * m.x + m.y);
 
 		return copy;
 
@@ -462,18 +672,13 @@ public class Game {
 		if (whoseTurn == o && m.who.getName() != 'O')
 			throw new IllegalMoveException("it is not X's turn");
 
-		if (board[m.x][m.y] != ' ')
-			throw new IllegalMoveException("Invalid move. The location (" + m.x + "," + m.y + ") is not empty");
+		if (m.x > 2 || m.y > 2)
+			throw new IllegalMoveException("Invalid move. The location (" + m.x + "," + m.y + ") is not on the board");
 
-		board[m.x][m.y] = m.who.getName();
-		if (whoseTurn.getName() == 'X')
-			whoseTurn = o;
-		else if (m.who.getName() == 'O')
-			whoseTurn = x;
-		else
-			throw new IllegalArgumentException();
+		if (getCell(m.x, m.y) != ' ')
+			throw new IllegalMoveException("Invalid move. The location (" + m.x + "," + m.y + ") is not empty");
 
-		this.evaluateGameState();
+		makeMove(3 * m.x + m.y);
 
 	}
 	
@@ -550,34 +755,41 @@ public class Game {
 	 * You can use this method to store (e.g. write to file) your value functions or
 	 * policies.
 	 * 
+	 * This contract only holds if {@link #hasBase3Hash()}: an {@link MNKGame}
+	 * overrides this method with a folded Zobrist hash, which can be negative or
+	 * collide. Code that indexes arrays or files by the hash must check
+	 * {@link #hasBase3Hash()} first.
+	 * 
 	 * @return an integer representation of the game
 	 */
 	public int hashCode() {
 		// ' ' ->0
 		// 'X' ->1
 		// 'O' ->2
-		String s = "";
-		for (int i = 0; i < 3; i++)
-			for (int j = 0; j < 3; j++) {
-				switch (board[i][j]) {
-				case 'X':
-					s += "1";
-					break;
-				case 'O':
-					s += "2";
-					break;
-				case ' ':
-					s += "0";
-					break;
-				}
-
-			}
-		// also encode whose turn it is. Either 1 or 2 (x or o)
+		// and whose turn it is as the last digit: either 1 or 2 (x or o). The value
+		// is maintained incrementally as the board changes.
+		return hash;
 
-		s += (whoseTurn == x) ? "1" : "2";
+	}
 
-		return Integer.parseInt(s, 3);
+	/**
+	 * @return whether {@link #hashCode()} is the base 3 number of the board and the
+	 *         side to move, between 0 and {@link #NUM_HASHES}-1 and unique to the
+	 *         game, so that it can index a state table, a policy file or a
+	 *         transition cache. True for a {@link Game}, false for an
+	 *         {@link MNKGame}, even on a 3x3 board.
+	 */
+	public boolean hasBase3Hash() {
+		return true;
+	}
 
+	/**
+	 * @return a 64-bit key of the game, e.g. for a transposition table: the
+	 *         {@link #hashCode()}, which is unique for 3x3 games. {@link MNKGame}
+	 *         uses a Zobrist hash instead.
+	 */
+	public long longHash() {
+		return hash;
 	}
 
 	/**
@@ -592,55 +804,109 @@ public class Game {
 	 */
 	public static Game inverseHash(int hash) {
 
-		Game g = new Game();
-
-		String s1 = Integer.toString(hash, 3);
+		if (hash < 0 || hash >= NUM_HASHES)
+			throw new IllegalArgumentException("Not a game hash: " + hash);
 
-		if (s1.charAt(s1.length() - 1) == '0')
+		// the last digit is whose turn it is, 0 means neither.
+		int turn = hash % 3;
+		if (turn == 0)
 			return null;
 
-		// add leading 0's
-		String s = new String(s1);
+		Game g = new Game();
+		if (turn == 1)
+			g.setSide(X_SIDE);
+		else
+			g.setSide(O_SIDE);
 
-		for (int i = 0; i < 10 - s1.length(); i++) {
-			s = "0" + s;
-		}
-		// System.out.println("Intermediate string:"+s);
-		// set whose turn
-		if (s.charAt(s.length() - 1) == '1')
-			g.whoseTurn = g.x;
-		else if (s.charAt(s.length() - 1) == '2')
-			g.whoseTurn = g.o;
-
-		for (int l = s.length() - 2; l >= 0; l--) {
-			int i = (int) l / 3;
-			int j = (int) l % 3;
-			switch (s.charAt(l)) {
-			case '0':
-				g.board[i][j] = ' ';
-				break;
-			case '1':
-				g.board[i][j] = 'X';
+		int digits = hash / 3;
+		for (int cell = 8; cell >= 0; cell--, digits /= 3) {
+			switch (digits % 3) {
+			case 1:
+				g.xBits |= 1 << cell;
 				break;
-			case '2':
-				g.board[i][j] = 'O';
+			case 2:
+				g.oBits |= 1 << cell;
 				break;
-			default:
-				throw new IllegalStateException("this shouldn't happen!");
-
 			}
 		}
+		g.hash = hash;
 
 		return g;
 	}
 
+	/**
+	 * @return the {@link Symmetry} that maps this game to its canonical representative: the one of its 8 symmetric copies
+	 *         with the lowest hash (the lowest such symmetry on ties).
+	 */
+	public int canonicalTransform() {
+		return canonicalTransform(xBits, oBits, side);
+	}
+
+	/**
+	 * The hash of the game given by two bitboards and the side to move, see
+	 * {@link #hashCode()}
+	 */
+	static int hashOf(int xBits, int oBits, int side) {
+		return BITS_HASH[xBits] + 2 * BITS_HASH[oBits] + side + 1;
+	}
+
+	/**
+	 * {@link #canonicalTransform()} of the game given by two bitboards and the side
+	 * to move
+	 */
+	static int canonicalTransform(int xBits, int oBits, int side) {
+		int best = Symmetry.IDENTITY;
+		int bestHash = hashOf(xBits, oBits, side);
+		for (int t = 1; t < Symmetry.COUNT; t++) {
+			int h = hashOf(Symmetry.BITS[t][xBits], Symmetry.BITS[t][oBits], side);
+			if (h < bestHash) {
+				bestHash = h;
+				best = t;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @return the hash of the canonical representative of this game, which is the same for all symmetric games. See
+	 *         {@link #canonicalTransform()}
+	 */
+	public int canonicalHash() {
+		int bestHash = hash;
+		for (int t = 1; t < Symmetry.COUNT; t++)
+			bestHash = Math.min(bestHash, hashOf(Symmetry.BITS[t][xBits], Symmetry.BITS[t][oBits], side));
+		return bestHash;
+	}
+
+	/**
+	 * Returns a copy of this game with the board transformed by symmetry {@code t}. The agents, whose turn it is and
+	 * the game state are unchanged.
+	 * 
+	 * @param t a {@link Symmetry}
+	 * @return the transformed game
+	 */
+	public Game transform(int t) {
+		Game copy = clone();
+		copy.xBits = Symmetry.BITS[t][xBits];
+		copy.oBits = Symmetry.BITS[t][oBits];
+		copy.hash = hashOf(copy.xBits, copy.oBits, side);
+		return copy;
+	}
+
+	/**
+	 * @return the canonical representative of this game, i.e. {@code transform(canonicalTransform())}
+	 */
+	public Game canonical() {
+		return transform(canonicalTransform());
+	}
+
 	public boolean equals(Object other) {
 		if (other == null)
 			return false;
-		else if (!(other instanceof Game))
+		else if (other.getClass() != getClass())
 			return false;
 
-		return this.hashCode() == other.hashCode();
+		return this.hash == ((Game) other).hash;
 	}
 
 	public int getState() {
@@ -652,7 +918,7 @@ public class Game {
 		return this.state != ONGOING;
 	}
 
-	public static final String help = " -h this menu" + "\n -x the X agent: -x <pi, vi, random, agg, def, human>"
+	public static final String help = " -h this menu" + "\n -x the X agent: -x <pi, vi, bi, ql, random, agg, def, human>"
 			+ "\n -o the O agent: -o <random, agg, def, human>"
 			+ "\n -s the agent that starts the game (x or o): -s <x or o>";
 
@@ -710,7 +976,7 @@ public class Game {
 			case "-x":
 				next = iter.next();
 				if (next == null || next.startsWith("-")) {
-					System.out.println("-x should be followed by the agent name, vi, pi, random, agg, def, or human");
+					System.out.println("-x should be followed by the agent name, vi, pi, bi, ql, random, agg, def, or human");
 					return;
 				}
 				if (next.equals("vi")) {
@@ -719,6 +985,9 @@ public class Game {
 				} else if (next.equals("pi")) {
 					System.out.println("X is pi agent.");
 					x = new PolicyIterationAgent();
+				} else if (next.equals("bi")) {
+					System.out.println("X is backward induction agent.");
+					x = new BackwardInductionAgent();
 				} else if (next.equals("random")) {
 					System.out.println("X is random agent.");
 					x = new RandomAgent();
@@ -736,7 +1005,7 @@ public class Game {
 					System.out.println("X is q learning agent.");
 					x = new QLearningAgent();
 				} else {
-					System.out.println("-x should be followed by the agent type: vi, pi, ql, random or human");
+					System.out.println("-x should be followed by the agent type: vi, pi, bi, ql, random or human");
 					return;
 
 				}
@@ -756,6 +1025,9 @@ public class Game {
 				else if (next.equals("pi")) {
 					System.out.println("Error: the policy iteration agent should be the X agent");
 					return;
+				} else if (next.equals("bi")) {
+					System.out.println("Error: the backward induction agent should be the X agent");
+					return;
 				} else if (next.equals("random"))
 					o = new RandomAgent();
 				else if (next.equals("human")) {
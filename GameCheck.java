@@ -0,0 +1,113 @@
+package ticTacToe;
+
+
+/**
+ * Checks the bitboard representation of {@link Game} against the original char[3][3] logic, on all 3^9 boards (valid
+ * or not) and both sides to move:
+ * <ul>
+ * <li>{@link Game#evaluateGameState()}, which looks the lines up in {@link Game#FIRST_LINE}, against testing the eight
+ * lines one by one, in the same order, then scanning for an empty cell;</li>
+ * <li>{@link Game#hashOf(int, int, int)} and {@link Game#hashCode()} against the base 3 string of the board and the side
+ * to move.</li>
+ * </ul>
+ *
+ * Prints the boards that differ, and exits with status 1 if there are any.
+ *
+ * Usage: GameCheck
+ *
+ */
+public class GameCheck {
+
+	/**
+	 * The state of {@code board} as the line by line check computed it: rows, then columns, then diagonals, the first
+	 * complete line winning.
+	 */
+	static int evaluate(char[][] board)
+	{
+		for(int i=0;i<3;i++)
+			if (board[i][0]!=' ' && board[i][0]==board[i][1] && board[i][1]==board[i][2])
+				return (board[i][0]=='X')?Game.X_WON:Game.O_WON;
+
+		for(int j=0;j<3;j++)
+			if (board[0][j]!=' ' && board[0][j]==board[1][j] && board[1][j]==board[2][j])
+				return (board[0][j]=='X')?Game.X_WON:Game.O_WON;
+
+		if (board[0][0]!=' ' && board[0][0]==board[1][1] && board[1][1]==board[2][2])
+			return (board[0][0]=='X')?Game.X_WON:Game.O_WON;
+
+		if (board[2][0]!=' ' && board[2][0]==board[1][1] && board[1][1]==board[0][2])
+			return (board[2][0]=='X')?Game.X_WON:Game.O_WON;
+
+		for(int i=0;i<3;i++)
+			for(int j=0;j<3;j++)
+				if (board[i][j]==' ')
+					return Game.ONGOING;
+
+		return Game.DRAW;
+	}
+
+	/**
+	 * The hash of {@code board} as the string based {@link Game#hashCode()} computed it: one base 3 digit per cell
+	 * (' '->0, 'X'->1, 'O'->2), then the side to move (X->1, O->2).
+	 */
+	static int hash(char[][] board, char whoseTurn)
+	{
+		String s="";
+		for(int i=0;i<3;i++)
+			for(int j=0;j<3;j++)
+				s+=(board[i][j]=='X')?"1":(board[i][j]=='O')?"2":"0";
+
+		s+=(whoseTurn=='X')?"1":"2";
+		return Integer.parseInt(s, 3);
+	}
+
+	public static void main(String[] args)
+	{
+		int boards=0;
+		int errors=0;
+		char[][] board=new char[3][3];
+		for(int code=0;code<19683;code++)
+		{
+			int xBits=0;
+			int oBits=0;
+			for(int cell=0, c=code;cell<9;cell++, c/=3)
+			{
+				board[cell/3][cell%3]=" XO".charAt(c%3);
+				if (c%3==1)
+					xBits|=1<<cell;
+				else if (c%3==2)
+					oBits|=1<<cell;
+			}
+
+			int expected=evaluate(board);
+			if (Game.evaluate(xBits, oBits)!=expected)
+			{
+				System.out.println("evaluate: expected "+expected+", got "+Game.evaluate(xBits, oBits)+" for X="+xBits+" O="+oBits);
+				errors++;
+			}
+
+			for(char who: new char[] {'X', 'O'})
+			{
+				Game g=new Game(who);
+				for(int cell=0;cell<9;cell++)
+					g.setCell(cell/3, cell%3, board[cell/3][cell%3]);
+
+				int side=(who=='X')?Game.X_SIDE:Game.O_SIDE;
+				int expectedHash=hash(board, who);
+				if (g.evaluateGameState()!=expected || g.hashCode()!=expectedHash
+						|| Game.hashOf(xBits, oBits, side)!=expectedHash)
+				{
+					System.out.println("game: expected state "+expected+" hash "+expectedHash+", got state "+g.getState()
+							+" hash "+g.hashCode()+" hashOf "+Game.hashOf(xBits, oBits, side)+" for\n"+g);
+					errors++;
+				}
+				boards++;
+			}
+		}
+
+		System.out.println(boards+" boards checked, "+errors+" errors");
+		if (errors>0)
+			System.exit(1);
+	}
+
+}
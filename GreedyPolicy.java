@@ -0,0 +1,37 @@
+package ticTacToe;
+
+/**
+ * The greedy policy of an {@link ArrayQTable}: a live view that plays the move with the highest q-value in each game,
+ * looked up in the greedy cells the table keeps up to date (see {@link ArrayQTable#getGreedyCell}). Creating it costs
+ * nothing, and it always reflects the current q-values, so a learning agent can hand it out while it is still training.
+ *
+ * Use {@link QLearningAgent#extractPolicy()} for a snapshot instead.
+ *
+ */
+public class GreedyPolicy extends Policy {
+
+	/**
+	 * the q-values the moves are read from
+	 */
+	final ArrayQTable qValues;
+
+	public GreedyPolicy(ArrayQTable qValues) {
+		this.qValues=qValues;
+	}
+
+	/**
+	 * @return the greedy move in {@code g}, or null if {@code g} is terminal or not in the q-table
+	 */
+	@Override
+	public Move getMove(Game g) {
+		if (!qValues.getIndex().contains(g))
+			return null;
+
+		int cell=qValues.argmaxQ(g);
+		if (cell<0)
+			return null;
+
+		return g.moveOf(cell);
+	}
+
+}
@@ -0,0 +1,340 @@
+package ticTacToe;
+
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link TrainingListener} that summarises each metric (the steps are dropped) in a fixed amount of memory, however
+ * long the training: the count, mean, minimum and maximum of its values, and a histogram of {@link #bins} equal-width
+ * bins, from which the percentiles are estimated.
+ *
+ * The bins start around the first values recorded, and whenever a value falls outside them their width is doubled,
+ * merging neighbouring bins, until it fits. Percentiles are interpolated within their bin, so they are within one bin
+ * width, at most twice {@code (max-min)/bins}, of the exact value. Infinite and NaN values are counted, and
+ * taken into the mean, minimum and maximum, but not binned.
+ *
+ * With a sampling interval k, only every k-th value of each metric (the 1st, the k+1-th, ...) is summarised, which
+ * keeps the cost of per-episode metrics low on long runs.
+ *
+ */
+public class HistogramTrainingListener implements TrainingListener {
+
+	/**
+	 * The summary of a metric
+	 */
+	private static class Summary {
+
+		/**
+		 * the number of values recorded, including those skipped by the sampling, and the number still to skip before
+		 * the next value summarised
+		 */
+		long recorded;
+		int skip;
+
+		/**
+		 * the number of values summarised, their sum, minimum and maximum
+		 */
+		long count;
+		double sum;
+		double min=Double.POSITIVE_INFINITY;
+		double max=Double.NEGATIVE_INFINITY;
+
+		/**
+		 * the counts of the bins: bin i holds the values in [low+i*width, low+(i+1)*width). While the finite values
+		 * are all equal, width is 0 and they are all in bin 0.
+		 */
+		final long[] counts;
+		double low;
+		double width;
+
+		/**
+		 * the number of values in the bins: the finite ones
+		 */
+		long binned;
+
+		Summary(int bins)
+		{
+			counts=new long[bins];
+		}
+
+		void add(double value)
+		{
+			count++;
+			sum+=value;
+			min=Math.min(min, value);
+			max=Math.max(max, value);
+			if (Double.isFinite(value))
+				bin(value);
+		}
+
+		private void bin(double value)
+		{
+			if (binned==0)
+				low=value;
+			else if (width==0 && value!=low)
+				open(value);
+
+			if (width>0)
+			{
+				while (value<low)
+					growDown();
+				while (index(value)>=counts.length)
+					growUp();
+			}
+
+			counts[(width==0)?0:index(value)]++;
+			binned++;
+		}
+
+		private int index(double value)
+		{
+			return (int) ((value-low)/width);
+		}
+
+		/**
+		 * Spreads the bins over the equal values so far and {@code value}, which differs from them
+		 */
+		private void open(double value)
+		{
+			long equal=counts[0];
+			counts[0]=0;
+			double first=low;
+			low=Math.min(first, value);
+			width=(Math.max(first, value)-low)/(counts.length/2);
+			counts[Math.min(index(first), counts.length-1)]=equal;
+		}
+
+		/**
+		 * Doubles the width of the bins, keeping their lower end
+		 */
+		private void growUp()
+		{
+			for(int i=0;i<counts.length/2;i++)
+				counts[i]=counts[2*i]+counts[2*i+1];
+			for(int i=counts.length/2;i<counts.length;i++)
+				counts[i]=0;
+			width*=2;
+		}
+
+		/**
+		 * Doubles the width of the bins, keeping their upper end
+		 */
+		private void growDown()
+		{
+			int half=counts.length/2;
+			for(int i=counts.length-1;i>=half;i--)
+				counts[i]=counts[2*(i-half)]+counts[2*(i-half)+1];
+			for(int i=0;i<half;i++)
+				counts[i]=0;
+			low-=counts.length*width;
+			width*=2;
+		}
+
+		/**
+		 * @return an estimate of the value of rank {@code rank} (from 1) among the binned values: the values of its bin
+		 * are taken as evenly spread over it. Clamped to the minimum and maximum.
+		 */
+		double valueOfRank(long rank)
+		{
+			long before=0;
+			int bin=0;
+			while (bin<counts.length-1 && before+counts[bin]<rank)
+				before+=counts[bin++];
+
+			double v=low+(bin+(rank-before-0.5)/Math.max(1, counts[bin]))*width;
+			return Math.max(min, Math.min(max, v));
+		}
+	}
+
+	/**
+	 * the default number of bins of each metric
+	 */
+	public static final int BINS=1024;
+
+	/**
+	 * the number of bins of each metric, even
+	 */
+	final int bins;
+
+	/**
+	 * only one value in this many of each metric is summarised
+	 */
+	final int sampleInterval;
+
+	private final Map<String, Summary> metrics=new LinkedHashMap<String, Summary>();
+
+	/**
+	 * A listener summarising every value, in {@link #BINS} bins per metric
+	 */
+	public HistogramTrainingListener()
+	{
+		this(BINS, 1);
+	}
+
+	/**
+	 *
+	 * @param bins the number of bins of each metric, even and at least 2
+	 * @param sampleInterval summarise one value in this many of each metric, at least 1
+	 */
+	public HistogramTrainingListener(int bins, int sampleInterval)
+	{
+		if (bins<2 || bins%2!=0)
+			throw new IllegalArgumentException("The number of bins should be even and at least 2: "+bins);
+
+		if (sampleInterval<1)
+			throw new IllegalArgumentException("The sampling interval should be at least 1: "+sampleInterval);
+
+		this.bins=bins;
+		this.sampleInterval=sampleInterval;
+	}
+
+	@Override
+	public synchronized void record(String metric, long step, double value)
+	{
+		Summary summary=metrics.get(metric);
+		if (summary==null)
+		{
+			summary=new Summary(bins);
+			metrics.put(metric, summary);
+		}
+
+		summary.recorded++;
+		if (summary.skip>0)
+		{
+			summary.skip--;
+			return;
+		}
+
+		summary.skip=sampleInterval-1;
+		summary.add(value);
+	}
+
+	/**
+	 *
+	 * @return the metrics recorded so far, in the order they were first recorded
+	 */
+	public synchronized List<String> getMetrics()
+	{
+		return new ArrayList<String>(metrics.keySet());
+	}
+
+	/**
+	 *
+	 * @param metric
+	 * @return the number of values recorded for {@code metric}, including those skipped by the sampling
+	 */
+	public synchronized long recorded(String metric)
+	{
+		Summary summary=metrics.get(metric);
+		return (summary==null)?0:summary.recorded;
+	}
+
+	/**
+	 *
+	 * @param metric
+	 * @return the number of values of {@code metric} summarised
+	 */
+	public synchronized long count(String metric)
+	{
+		Summary summary=metrics.get(metric);
+		return (summary==null)?0:summary.count;
+	}
+
+	/**
+	 *
+	 * @param metric
+	 * @return the mean of the values of {@code metric}, NaN if there are none
+	 */
+	public synchronized double mean(String metric)
+	{
+		Summary summary=metrics.get(metric);
+		return (summary==null)?Double.NaN:summary.sum/summary.count;
+	}
+
+	public synchronized double min(String metric)
+	{
+		Summary summary=metrics.get(metric);
+		return (summary==null)?Double.NaN:summary.min;
+	}
+
+	public synchronized double max(String metric)
+	{
+		Summary summary=metrics.get(metric);
+		return (summary==null)?Double.NaN:summary.max;
+	}
+
+	/**
+	 *
+	 * @param metric
+	 * @param p between 0 and 100
+	 * @return an estimate of the {@code p}-th percentile (nearest rank) of the finite values of {@code metric}, from its
+	 * bins, NaN if there are none
+	 */
+	public synchronized double percentile(String metric, double p)
+	{
+		Summary summary=metrics.get(metric);
+		if (summary==null || summary.binned==0)
+			return Double.NaN;
+
+		long rank=(long) Math.ceil(p/100*summary.binned);
+		return summary.valueOfRank(Math.max(1, Math.min(summary.binned, rank)));
+	}
+
+	/**
+	 *
+	 * @param metric
+	 * @param bins the number of bins
+	 * @return the number of finite values of {@code metric} in each of {@code bins} equal-width bins between their
+	 * minimum and maximum (the last bin includes the maximum), counting the values of each bin of the summary in the
+	 * bin its middle falls in.
+	 */
+	public synchronized long[] histogram(String metric, int bins)
+	{
+		long[] result=new long[bins];
+		Summary summary=metrics.get(metric);
+		if (summary==null || summary.binned==0)
+			return result;
+
+		if (summary.width==0)
+		{
+			result[0]=summary.binned;
+			return result;
+		}
+
+		//the middles of the lowest and highest bins holding values
+		int firstBin=0;
+		while (summary.counts[firstBin]==0)
+			firstBin++;
+		int lastBin=summary.counts.length-1;
+		while (summary.counts[lastBin]==0)
+			lastBin--;
+
+		double width=(lastBin-firstBin)*summary.width/bins;
+		for(int i=firstBin;i<=lastBin;i++)
+		{
+			int bin=(width==0)?0:(int) ((i-firstBin)*summary.width/width);
+			result[Math.min(bin, bins-1)]+=summary.counts[i];
+		}
+
+		return result;
+	}
+
+	/**
+	 *
+	 * @return one line per metric: its name, count, mean, min, median, 99th percentile and max
+	 */
+	@Override
+	public synchronized String toString()
+	{
+		StringBuilder result=new StringBuilder();
+		for(String metric: getMetrics())
+			result.append(String.format("%s: count=%d mean=%.6g min=%.6g p50=%.6g p99=%.6g max=%.6g%n", metric, count(metric),
+					mean(metric), min(metric), percentile(metric, 50), percentile(metric, 99), max(metric)));
+
+		return result.toString();
+	}
+
+}
@@ -0,0 +1,242 @@
+package ticTacToe;
+
+
+/**
+ * A linear approximation of the q-values of the games on an {@link MNKBoard}: Q(s,a) is the dot product of a weight
+ * vector with the features of the board after the side to move in s plays a, seen from that side ("mine" vs "theirs").
+ * The number of features only depends on k, so the memory used is the same whatever the number of states, and nothing
+ * has to be enumerated: this works on boards far too large for a {@link QTable}.
+ *
+ * The features, all between 0 and 1, are:
+ * <ul>
+ * <li>a bias, always 1</li>
+ * <li>for j from 1 to k, the fraction of the lines holding j of my pieces and none of theirs, then the same for theirs</li>
+ * <li>whether they can win with their next move, whether I have two or more winning cells (a fork), and the fraction of the
+ * cells where I could win next</li>
+ * <li>whether the move blocks a line where they had k-1 pieces</li>
+ * <li>the centrality of the move: the number of lines through its cell, over the most lines through any cell</li>
+ * <li>whether the move is in a corner, and my share of the corners and of the centre cells, minus theirs</li>
+ * </ul>
+ *
+ * {@link #features} writes into an array given by the caller, so evaluating a move doesn't allocate. The weights are
+ * updated with dense vector operations on primitive arrays, see {@link #update}.
+ *
+ */
+public class LinearQFunction {
+
+	/**
+	 * the board the games are played on
+	 */
+	final MNKBoard board;
+
+	/**
+	 * the number of features
+	 */
+	final int size;
+
+	/**
+	 * the weight of each feature
+	 */
+	final double[] weights;
+
+	/**
+	 * the bitboards of the corners, and of the centre cells: the middle cell, or the 2 or 4 middle cells of a board with
+	 * an even number of rows or columns
+	 */
+	final long corners;
+	final long centre;
+
+	/**
+	 * the most {@link MNKBoard#linesThrough} any cell
+	 */
+	final int maxLinesThrough;
+
+	//the offsets of the features after the line counts
+	private final int theirThreat;
+	private final int fork;
+	private final int myThreats;
+	private final int block;
+	private final int centrality;
+	private final int corner;
+	private final int cornerControl;
+	private final int centreControl;
+
+	/**
+	 * A q-function on {@code board} with all weights 0
+	 * @param board
+	 */
+	public LinearQFunction(MNKBoard board)
+	{
+		this.board=board;
+		int k=board.k;
+		this.theirThreat=2*k+1;
+		this.fork=theirThreat+1;
+		this.myThreats=fork+1;
+		this.block=myThreats+1;
+		this.centrality=block+1;
+		this.corner=centrality+1;
+		this.cornerControl=corner+1;
+		this.centreControl=cornerControl+1;
+		this.size=centreControl+1;
+		this.weights=new double[size];
+
+		int m=board.m;
+		int n=board.n;
+		this.corners=(1L<<board.cell(0, 0))|(1L<<board.cell(0, n-1))|(1L<<board.cell(m-1, 0))|(1L<<board.cell(m-1, n-1));
+		long middle=0;
+		for(int x=(m-1)/2;x<=m/2;x++)
+			for(int y=(n-1)/2;y<=n/2;y++)
+				middle|=1L<<board.cell(x, y);
+		this.centre=middle;
+
+		int most=1;
+		for(long[] through: board.linesThrough)
+			most=Math.max(most, through.length);
+		this.maxLinesThrough=most;
+	}
+
+	/**
+	 * @return the number of features, and of weights
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	public double[] getWeights()
+	{
+		return weights;
+	}
+
+	/**
+	 * Writes the features of playing {@code cell} in the game given by its bitboards into {@code out}. Allocates nothing.
+	 * @param mine the bitboard of the side to move
+	 * @param theirs the bitboard of the other side
+	 * @param cell an empty cell
+	 * @param out where to write the features, at least {@link #size()} long
+	 */
+	public void features(long mine, long theirs, int cell, double[] out)
+	{
+		int k=board.k;
+		long bit=1L<<cell;
+		long after=mine|bit;
+		long empty=~(after|theirs)&board.full;
+		long myWins=0;
+		long theirWins=0;
+		boolean blocks=false;
+
+		for(int i=0;i<size;i++)
+			out[i]=0;
+
+		double perLine=1.0/board.lines.length;
+		for(long line: board.lines)
+		{
+			int my=Long.bitCount(line&after);
+			int their=Long.bitCount(line&theirs);
+			if (their==0)
+			{
+				if (my>0)
+					out[my]+=perLine;
+				if (my==k-1)
+					myWins|=line&empty;
+			}
+			else if (my==0)
+			{
+				out[k+their]+=perLine;
+				if (their==k-1)
+					theirWins|=line&empty;
+			}
+			else if (my==1 && their==k-1 && (line&bit)!=0)
+				blocks=true;
+		}
+
+		out[0]=1;
+		out[theirThreat]=(theirWins!=0)?1:0;
+		out[fork]=(Long.bitCount(myWins)>1)?1:0;
+		out[myThreats]=(double) Long.bitCount(myWins)/board.cells;
+		out[block]=blocks?1:0;
+		out[centrality]=(double) board.linesThrough[cell].length/maxLinesThrough;
+		out[corner]=((corners&bit)!=0)?1:0;
+		out[cornerControl]=(double) (Long.bitCount(after&corners)-Long.bitCount(theirs&corners))/Long.bitCount(corners);
+		out[centreControl]=(double) (Long.bitCount(after&centre)-Long.bitCount(theirs&centre))/Long.bitCount(centre);
+	}
+
+	/**
+	 * Writes the features of playing {@code cell} in {@code g}, for the side to move, into {@code out}
+	 */
+	public void features(Game g, int cell, double[] out)
+	{
+		if (g.side==Game.X_SIDE)
+			features(g.getXBits(), g.getOBits(), cell, out);
+		else
+			features(g.getOBits(), g.getXBits(), cell, out);
+	}
+
+	/**
+	 * @param features
+	 * @return the q-value of the move with these features: the dot product of the weights and the features
+	 */
+	public double value(double[] features)
+	{
+		double q=0;
+		for(int i=0;i<size;i++)
+			q+=weights[i]*features[i];
+		return q;
+	}
+
+	/**
+	 * @param g a game
+	 * @param scratch an array of at least {@link #size()} doubles, overwritten
+	 * @return the highest q-value of the moves in {@code g}, 0 if it is terminal
+	 */
+	public double maxQ(Game g, double[] scratch)
+	{
+		int cell=argmaxQ(g, scratch);
+		if (cell<0)
+			return 0;
+
+		features(g, cell, scratch);
+		return value(scratch);
+	}
+
+	/**
+	 * @param g a game
+	 * @param scratch an array of at least {@link #size()} doubles, overwritten
+	 * @return the cell of the move with the highest q-value in {@code g} (the lowest cell on ties), or -1 if it is
+	 * terminal
+	 */
+	public int argmaxQ(Game g, double[] scratch)
+	{
+		if (g.isTerminal())
+			return -1;
+
+		long empty=~(g.getXBits()|g.getOBits())&board.full;
+		int best=-1;
+		double bestQ=Double.NEGATIVE_INFINITY;
+		for(;empty!=0;empty&=empty-1)
+		{
+			int cell=Long.numberOfTrailingZeros(empty);
+			features(g, cell, scratch);
+			double q=value(scratch);
+			if (q>bestQ)
+			{
+				bestQ=q;
+				best=cell;
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * The gradient step of linear Q-learning: adds {@code step*features} to the weights.
+	 * @param features the features of the move updated
+	 * @param step the learning rate times the TD error
+	 */
+	public void update(double[] features, double step)
+	{
+		for(int i=0;i<size;i++)
+			weights[i]+=step*features[i];
+	}
+
+}
@@ -0,0 +1,216 @@
+package ticTacToe;
+
+import java.util.Random;
+
+/**
+ * A Q-Learning agent with linear function approximation: instead of a table with one q-value per (game, move) pair,
+ * which has to enumerate every state (see {@link QLearningAgent#initQTable()}), the q-values are the dot product of a few
+ * weights with features of the board, see {@link LinearQFunction}. The memory used is the same on every board, so it
+ * learns on 4x4, 5x5 or larger {@link MNKBoard}s, where there are far too many states to tabulate.
+ *
+ * Like the {@link QLearningAgent}, it plays X in a {@link TTTEnvironment}, with an epsilon greedy policy while training.
+ * Each step updates the weights by semi-gradient Q-learning: {@code w += alpha*(r + discount*max Q(s',.) - Q(s,a))*features(s,a)}.
+ * The feature arrays are allocated once, so training allocates nothing beyond what the environment does.
+ *
+ */
+public class LinearQLearningAgent extends Agent {
+
+	/**
+	 * The learning rate, between 0 and 1. Lower than the tabular agent's, since every update moves the q-values of all
+	 * the games that share features.
+	 */
+	double alpha=0.01;
+
+	/**
+	 * The number of episodes to train for
+	 */
+	int numEpisodes=20000;
+
+	/**
+	 * The discount factor (gamma)
+	 */
+	double discount=0.9;
+
+	/**
+	 * The epsilon in the epsilon greedy policy used during training.
+	 */
+	double epsilon=0.1;
+
+	/**
+	 * the q-function learnt
+	 */
+	final LinearQFunction qFunction;
+
+	/**
+	 * This is the Reinforcement Learning environment that this agent will interact with when it is training.
+	 */
+	TTTEnvironment env;
+
+	/**
+	 * The random number generator of the epsilon greedy policy in {@link #train}
+	 */
+	Random random=new Random();
+
+	/**
+	 * the features of the move being updated, and a scratch array for the moves of the next game, reused by every step
+	 * of {@link #train}
+	 */
+	private final double[] features;
+	private final double[] scratch;
+
+	/**
+	 * Construct an agent that learns to play on {@code board} from interactions with {@code opponent}.
+	 * @param board the board to play on
+	 * @param opponent the opponent agent that this agent will interact with to learn.
+	 * @param learningRate alpha
+	 * @param numEpisodes The number of episodes (games) to train for
+	 * @param discount
+	 */
+	public LinearQLearningAgent(MNKBoard board, Agent opponent, double learningRate, int numEpisodes, double discount)
+	{
+		this.env=(board==MNKBoard.TIC_TAC_TOE)?new TTTEnvironment(opponent):new TTTEnvironment(board, opponent);
+		this.alpha=learningRate;
+		this.numEpisodes=numEpisodes;
+		this.discount=discount;
+		this.qFunction=new LinearQFunction(board);
+		this.features=new double[qFunction.size()];
+		this.scratch=new double[qFunction.size()];
+		this.policy=new Greedy(qFunction);
+		train();
+	}
+
+	/**
+	 * Same as {@link #LinearQLearningAgent(MNKBoard, Agent, double, int, double)} on the Tic-Tac-Toe board
+	 */
+	public LinearQLearningAgent(Agent opponent, double learningRate, int numEpisodes, double discount)
+	{
+		this(MNKBoard.TIC_TAC_TOE, opponent, learningRate, numEpisodes, discount);
+	}
+
+	/**
+	 * Uses default parameters: a RandomAgent opponent on the Tic-Tac-Toe board, a learning rate of 0.01 and 20000
+	 * episodes.
+	 */
+	public LinearQLearningAgent()
+	{
+		this(new RandomAgent(), 0.01, 20000, 0.9);
+	}
+
+	/**
+	 * Plays {@code this.numEpisodes} episodes with the {@link TTTEnvironment}, updating the weights after every move.
+	 * The agent's policy is a live greedy view of the weights, so it follows the training.
+	 */
+	public void train()
+	{
+		long start=System.nanoTime();
+		for(int episode=0;episode<numEpisodes;episode++)
+		{
+			env.reset();
+			double episodeReturn=0.0;
+			double qDelta=0.0;
+
+			while (!env.isTerminal())
+			{
+				Game currentState=env.getCurrentGameState();
+				int cell=epsilonGreedyCell(currentState);
+				//the environment plays the move in place, so take the features of the move first
+				qFunction.features(currentState, cell, features);
+				double q=qFunction.value(features);
+
+				try
+				{
+					Outcome outcome=env.executeMove(currentState.moveOf(cell));
+					double target=outcome.localReward;
+					if (!outcome.sPrime.isTerminal())
+						target+=discount*qFunction.maxQ(outcome.sPrime, scratch);
+
+					double step=alpha*(target-q);
+					qFunction.update(features, step);
+					qDelta+=Math.abs(step);
+					episodeReturn+=outcome.localReward;
+				}
+				catch(IllegalMoveException e)
+				{
+					e.printStackTrace();
+				}
+			}
+
+			if (listener!=null)
+			{
+				listener.record(TrainingListener.EPISODE_RETURN, episode, episodeReturn);
+				listener.record(TrainingListener.Q_DELTA, episode, qDelta);
+			}
+		}
+
+		if (listener!=null)
+		{
+			double seconds=(System.nanoTime()-start)/1e9;
+			listener.record(TrainingListener.TIME_TRAIN, 0, seconds*1000);
+			listener.record(TrainingListener.EPISODES_PER_SECOND, numEpisodes, numEpisodes/seconds);
+		}
+	}
+
+	/**
+	 * @return a random empty cell with probability epsilon, otherwise the greedy one
+	 */
+	private int epsilonGreedyCell(Game g)
+	{
+		if (random.nextDouble()<epsilon)
+		{
+			long empty=~(g.getXBits()|g.getOBits())&g.getShape().full;
+			for(int i=random.nextInt(Long.bitCount(empty));i>0;i--)
+				empty&=empty-1;
+			return Long.numberOfTrailingZeros(empty);
+		}
+
+		return qFunction.argmaxQ(g, scratch);
+	}
+
+	public LinearQFunction getQFunction()
+	{
+		return qFunction;
+	}
+
+	/**
+	 * The greedy policy of a {@link LinearQFunction}: a live view, like {@link GreedyPolicy}. Each thread gets its own
+	 * scratch array, so it can be shared by games played in parallel without allocating on every move.
+	 */
+	static class Greedy extends Policy {
+
+		final LinearQFunction qFunction;
+
+		/**
+		 * the scratch array of each thread, for {@link LinearQFunction#argmaxQ}
+		 */
+		private final ThreadLocal<double[]> scratch;
+
+		Greedy(LinearQFunction qFunction)
+		{
+			this.qFunction=qFunction;
+			this.scratch=ThreadLocal.withInitial(() -> new double[qFunction.size()]);
+		}
+
+		/**
+		 * @return the greedy move in {@code g}, or null if {@code g} is terminal
+		 */
+		@Override
+		public Move getMove(Game g)
+		{
+			int cell=qFunction.argmaxQ(g, scratch.get());
+			if (cell<0)
+				return null;
+
+			return g.moveOf(cell);
+		}
+	}
+
+	public static void main(String a[]) throws IllegalMoveException
+	{
+		//Test method: learn to play on a 4x4 board against a random agent, then play a game against an aggressive one.
+		MNKBoard board=new MNKBoard(4, 4, 4);
+		LinearQLearningAgent agent=new LinearQLearningAgent(board, new RandomAgent(), 0.01, 20000, 0.9);
+		MNKGame g=new MNKGame(board, agent, new AggressiveAgent());
+		g.playOut();
+	}
+
+}
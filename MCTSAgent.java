@@ -0,0 +1,235 @@
+package ticTacToe;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * A Monte Carlo Tree Search (UCT) agent: before each move it runs a fixed budget of random playouts from the current
+ * game, grown into a {@link MCTSTree}, and plays the move with the most playouts. It needs no model of the opponent and
+ * no training, so it plays as X or O, on Tic-Tac-Toe or on larger {@link MNKBoard}s where value and policy iteration
+ * can't enumerate the states.
+ *
+ * The playouts can be spread over several threads in one of two modes:
+ * <ul>
+ * <li>{@link #ROOT_PARALLEL}: each thread grows its own tree from the current game, and the playouts of each move are
+ * summed over the trees.</li>
+ * <li>{@link #TREE_PARALLEL}: all the threads grow the same tree, see {@link MCTSTree}.</li>
+ * </ul>
+ *
+ * The trees are kept between moves: on its next turn, e.g. in {@link Game#playOut()}, the agent finds the new game below
+ * the root (after its own move and the opponent's reply) and starts from that subtree, with the playouts it already
+ * holds. If the game isn't in the tree (a new game), the tree starts again from scratch.
+ *
+ */
+public class MCTSAgent extends Agent {
+
+	public static final int ROOT_PARALLEL=0;
+	public static final int TREE_PARALLEL=1;
+
+	/**
+	 * the number of playouts per move, over all the threads
+	 */
+	int playouts=10000;
+
+	/**
+	 * the number of threads searching
+	 */
+	int threads=1;
+
+	/**
+	 * either ROOT_PARALLEL or TREE_PARALLEL
+	 */
+	int mode=ROOT_PARALLEL;
+
+	/**
+	 * the default maximum number of nodes of each tree
+	 */
+	public static final int CAPACITY=1<<19;
+
+	/**
+	 * the maximum number of nodes of each tree
+	 */
+	final int capacity;
+
+	/**
+	 * whether to keep the subtree of the new game between moves
+	 */
+	boolean reuse=true;
+
+	/**
+	 * the trees: one per thread in the ROOT_PARALLEL mode, one in the TREE_PARALLEL mode
+	 */
+	final MCTSTree[] trees;
+
+	/**
+	 * the pool the threads search on, null with one thread
+	 */
+	final ForkJoinPool pool;
+
+	final SplittableRandom random=new SplittableRandom();
+
+	/**
+	 * the number of playouts already in the tree(s) when the last search started, thanks to the reuse of the subtree
+	 */
+	long reusedPlayouts;
+
+	/**
+	 * A single threaded agent with 10000 playouts per move
+	 */
+	public MCTSAgent()
+	{
+		this(10000, 1, ROOT_PARALLEL);
+	}
+
+	/**
+	 * An agent with trees of {@link #CAPACITY} nodes
+	 * @param playouts the number of playouts per move, over all the threads
+	 * @param threads the number of threads searching
+	 * @param mode either {@link #ROOT_PARALLEL} or {@link #TREE_PARALLEL}
+	 */
+	public MCTSAgent(int playouts, int threads, int mode)
+	{
+		this(playouts, threads, mode, CAPACITY);
+	}
+
+	/**
+	 *
+	 * @param playouts the number of playouts per move, over all the threads
+	 * @param threads the number of threads searching
+	 * @param mode either {@link #ROOT_PARALLEL} or {@link #TREE_PARALLEL}
+	 * @param capacity the maximum number of nodes of each tree, at least 1. A node takes 22 bytes, so the default
+	 * {@link #CAPACITY} of 2^19 is about 11.5 MB per tree, allocated up front; the {@link #ROOT_PARALLEL} mode has one
+	 * tree per thread, so that many times as much.
+	 */
+	public MCTSAgent(int playouts, int threads, int mode, int capacity)
+	{
+		if (playouts<1)
+			throw new IllegalArgumentException("The number of playouts should be at least 1");
+
+		if (threads<1)
+			throw new IllegalArgumentException("The number of threads should be at least 1");
+
+		if (mode!=ROOT_PARALLEL && mode!=TREE_PARALLEL)
+			throw new IllegalArgumentException("Unknown mode:"+mode);
+
+		this.playouts=playouts;
+		this.threads=threads;
+		this.mode=mode;
+		this.capacity=capacity;
+		this.trees=new MCTSTree[(mode==ROOT_PARALLEL)?threads:1];
+		for(int i=0;i<trees.length;i++)
+			trees[i]=new MCTSTree(capacity);
+		this.pool=(threads>1)?new ForkJoinPool(threads):null;
+	}
+
+	/**
+	 * Searches from {@code g} and returns the move with the most playouts. The agent keeps its trees between calls, so
+	 * it plays one game at a time.
+	 * @return the move, or null if {@code g} is terminal
+	 */
+	@Override
+	public synchronized Move getMove(Game g)
+	{
+		if (g.isTerminal())
+			return null;
+
+		reusedPlayouts=0;
+		for(MCTSTree tree: trees)
+		{
+			if (!reuse || !tree.advance(g))
+				tree.reset(g);
+			reusedPlayouts+=tree.getRootVisits();
+		}
+
+		if (pool==null)
+			trees[0].search(g.clone(), playouts, random.split());
+		else
+			searchInParallel(g);
+
+		long[] counts=new long[g.getShape().cells];
+		for(MCTSTree tree: trees)
+			tree.addRootVisits(counts);
+
+		//with no children at the root (a pool too small to expand it), play the first empty cell
+		long empty=~(g.getXBits()|g.getOBits())&g.getShape().full;
+		int best=Long.numberOfTrailingZeros(empty);
+		for(;empty!=0;empty&=empty-1)
+		{
+			int c=Long.numberOfTrailingZeros(empty);
+			if (counts[c]>counts[best])
+				best=c;
+		}
+
+		return g.moveOf(best);
+	}
+
+	/**
+	 * Splits the playouts between the threads: over the trees in the ROOT_PARALLEL mode, on the same tree in the
+	 * TREE_PARALLEL mode.
+	 */
+	private void searchInParallel(Game g)
+	{
+		List<Callable<Void>> tasks=new ArrayList<Callable<Void>>();
+		for(int t=0;t<threads;t++)
+		{
+			MCTSTree tree=trees[(mode==ROOT_PARALLEL)?t:0];
+			// spread the remainder over the first threads
+			int share=playouts/threads+((t<playouts%threads)?1:0);
+			Game game=g.clone();
+			SplittableRandom rng=random.split();
+			tasks.add(() -> {
+				tree.search(game, share, rng);
+				return null;
+			});
+		}
+
+		try
+		{
+			for(Future<Void> f: pool.invokeAll(tasks))
+				f.get();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while searching", e);
+		}
+		catch(ExecutionException e)
+		{
+			throw new IllegalStateException("Search failed", e.getCause());
+		}
+	}
+
+	/**
+	 * @return the number of playouts reused from the previous move when the last search started
+	 */
+	public long getReusedPlayouts()
+	{
+		return reusedPlayouts;
+	}
+
+	/**
+	 * @return the number of nodes in use in the trees
+	 */
+	public long getNodeCount()
+	{
+		long nodes=0;
+		for(MCTSTree tree: trees)
+			nodes+=tree.size();
+		return nodes;
+	}
+
+	public static void main(String a[]) throws IllegalMoveException
+	{
+		//Test method: a tree-parallel agent against a defensive agent, on a 5x5 board with 4 in a row to win.
+		MCTSAgent agent=new MCTSAgent(20000, Runtime.getRuntime().availableProcessors(), TREE_PARALLEL);
+		MNKGame g=new MNKGame(new MNKBoard(5, 5, 4), agent, new DefensiveAgent());
+		g.playOut();
+	}
+
+}
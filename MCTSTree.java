@@ -0,0 +1,386 @@
+package ticTacToe;
+
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A Monte Carlo search tree (UCT) over the games of an {@link MNKBoard}, for {@link MCTSAgent}.
+ *
+ * The nodes live in a pool of primitive arrays rather than one object per node: node i is the move {@code cell[i]} from
+ * its parent {@code parent[i]}, its children are the {@code childCount[i]} consecutive nodes from {@code firstChild[i]}
+ * (one per empty cell, added at once when the node is expanded), and its statistics are the number of playouts through it
+ * and their score for the side that moved into it, in half points: 2 for a win, 1 for a draw. Games are not stored: a
+ * playout replays the moves from the root on a scratch copy of the root game, with {@link Game#makeMove(int)}.
+ *
+ * Several threads can search the same tree at once (tree parallelism). The statistics are updated atomically, a playout
+ * counts as a loss for the nodes it goes through until its result is known (a "virtual loss", which spreads the threads
+ * over different branches), and a node is expanded by the first thread that claims it. When the pool is full, nodes are no
+ * longer expanded but playouts go on.
+ *
+ * Between moves, {@link #advance} makes the node of the new game the root and packs its subtree at the start of the pool,
+ * so the playouts already spent on it are reused and the rest of the pool is free again.
+ *
+ */
+public class MCTSTree {
+
+	/**
+	 * the {@link #firstChild} of a node with no children yet
+	 */
+	static final int UNEXPANDED=-1;
+
+	/**
+	 * the {@link #firstChild} of a node while a thread adds its children
+	 */
+	static final int EXPANDING=-2;
+
+	/**
+	 * atomic access to the elements of the int arrays
+	 */
+	private static final VarHandle INT=MethodHandles.arrayElementVarHandle(int[].class);
+
+	/**
+	 * the maximum number of nodes
+	 */
+	final int capacity;
+
+	final int[] parent;
+	final int[] firstChild;
+	final byte[] childCount;
+	final byte[] cell;
+	final int[] visits;
+	final int[] score;
+
+	/**
+	 * the new index of each node while the pool is packed by {@link #advance}
+	 */
+	private final int[] relocated;
+
+	/**
+	 * the number of nodes in use
+	 */
+	final AtomicInteger size=new AtomicInteger();
+
+	/**
+	 * the root node, always 0, and its game: the bitboards and the side to move
+	 */
+	final int root=0;
+	MNKBoard shape;
+	long rootX;
+	long rootO;
+	int rootSide;
+
+	/**
+	 * the exploration constant of UCT
+	 */
+	double exploration=Math.sqrt(2);
+
+	/**
+	 * the number of playouts through a node before it is expanded, so that the leaves reached once don't fill the pool
+	 */
+	int expandVisits=2;
+
+	/**
+	 *
+	 * @param capacity the maximum number of nodes
+	 */
+	public MCTSTree(int capacity)
+	{
+		if (capacity<1)
+			throw new IllegalArgumentException("The capacity should be at least 1");
+
+		this.capacity=capacity;
+		this.parent=new int[capacity];
+		this.firstChild=new int[capacity];
+		this.childCount=new byte[capacity];
+		this.cell=new byte[capacity];
+		this.visits=new int[capacity];
+		this.score=new int[capacity];
+		this.relocated=new int[capacity];
+	}
+
+	/**
+	 * Clears the tree, leaving only a root for {@code g}
+	 * @param g
+	 */
+	public void reset(Game g)
+	{
+		shape=g.getShape();
+		rootX=g.getXBits();
+		rootO=g.getOBits();
+		rootSide=g.side;
+		parent[root]=-1;
+		firstChild[root]=UNEXPANDED;
+		childCount[root]=0;
+		visits[root]=0;
+		score[root]=0;
+		size.set(1);
+	}
+
+	/**
+	 * Makes the node of {@code g} the root, if {@code g} follows from the root game by moves in the tree, and frees the
+	 * nodes that are not below it.
+	 * @param g
+	 * @return false if {@code g} is not in the tree, which is then unchanged
+	 */
+	public boolean advance(Game g)
+	{
+		if (size.get()==0 || g.getShape()!=shape)
+			return false;
+
+		long x=g.getXBits();
+		long o=g.getOBits();
+		if ((rootX&~x)!=0 || (rootO&~o)!=0)
+			return false;
+
+		//follow the new pieces down the tree, one per side in turn
+		long added=(x|o)&~(rootX|rootO);
+		int node=root;
+		int side=rootSide;
+		while (added!=0)
+		{
+			int first=firstChild[node];
+			if (first<0)
+				return false;
+
+			long mine=added&((side==Game.X_SIDE)?x:o);
+			int next=-1;
+			for(int c=first;c<first+childCount[node];c++)
+				if ((mine&(1L<<cell[c]))!=0)
+				{
+					next=c;
+					break;
+				}
+
+			if (next<0)
+				return false;
+
+			added&=~(1L<<cell[next]);
+			node=next;
+			side^=1;
+		}
+
+		if (side!=g.side)
+			return false;
+
+		if (node!=root)
+			pack(node);
+
+		rootX=x;
+		rootO=o;
+		rootSide=side;
+		return true;
+	}
+
+	/**
+	 * Moves the subtree of {@code node} to the start of the pool, with {@code node} as the root. The nodes are moved in
+	 * the order they were added, and children are always added after their parent, so each node moves to an index no
+	 * higher than its own and nothing is overwritten before it has been moved.
+	 */
+	private void pack(int node)
+	{
+		int n=size.get();
+		int next=0;
+		for(int i=node;i<n;i++)
+		{
+			if (i==node || (parent[i]>=node && relocated[parent[i]]>=0))
+				relocated[i]=next++;
+			else
+				relocated[i]=-1;
+		}
+
+		for(int i=node;i<n;i++)
+		{
+			int j=relocated[i];
+			if (j<0)
+				continue;
+
+			parent[j]=(i==node)?-1:relocated[parent[i]];
+			firstChild[j]=(firstChild[i]>=0)?relocated[firstChild[i]]:UNEXPANDED;
+			childCount[j]=childCount[i];
+			cell[j]=cell[i];
+			visits[j]=visits[i];
+			score[j]=score[i];
+		}
+
+		size.set(next);
+	}
+
+	/**
+	 * Runs {@code playouts} playouts from the root. Can be called by several threads at once, each with its own game and
+	 * random number generator.
+	 * @param game a copy of the root game, which is played on and restored after each playout
+	 * @param playouts
+	 * @param rng
+	 */
+	public void search(Game game, int playouts, SplittableRandom rng)
+	{
+		int cells=shape.cells;
+		int[] path=new int[cells+1];
+		int[] moves=new int[cells];
+		for(int p=0;p<playouts;p++)
+		{
+			int depth=0;
+			int played=0;
+			int node=root;
+			path[0]=root;
+			INT.getAndAdd(visits, root, 1);
+
+			//selection and expansion
+			while (!game.isTerminal())
+			{
+				int first=(int) INT.getAcquire(firstChild, node);
+				if (first==UNEXPANDED)
+				{
+					if (visits[node]<expandVisits || !expand(node, game))
+						break;
+					first=(int) INT.getAcquire(firstChild, node);
+				}
+				else if (first==EXPANDING)
+					break;
+
+				node=select(node, first);
+				game.makeMove(cell[node]);
+				moves[played++]=cell[node];
+				path[++depth]=node;
+				INT.getAndAdd(visits, node, 1);
+			}
+
+			//random playout
+			while (!game.isTerminal())
+			{
+				long empty=~(game.getXBits()|game.getOBits())&shape.full;
+				int c=nthCell(empty, rng.nextInt(Long.bitCount(empty)));
+				game.makeMove(c);
+				moves[played++]=c;
+			}
+
+			//backpropagation: the node at depth d was moved into by the side to move at depth d-1
+			int state=game.getState();
+			for(int d=1;d<=depth;d++)
+			{
+				int mover=rootSide^((d-1)&1);
+				int points;
+				if (state==Game.DRAW)
+					points=1;
+				else
+					points=((state==Game.X_WON)==(mover==Game.X_SIDE))?2:0;
+				if (points>0)
+					INT.getAndAdd(score, path[d], points);
+			}
+
+			while (played>0)
+				game.unmakeMove(moves[--played]);
+		}
+	}
+
+	/**
+	 * Adds the children of {@code node}, one per empty cell of {@code game}, unless another thread is already doing it
+	 * or the pool is full.
+	 * @return true if the node has children
+	 */
+	private boolean expand(int node, Game game)
+	{
+		if (!INT.compareAndSet(firstChild, node, UNEXPANDED, EXPANDING))
+			return (int) INT.getAcquire(firstChild, node)>=0;
+
+		long empty=~(game.getXBits()|game.getOBits())&shape.full;
+		int count=Long.bitCount(empty);
+		int start;
+		do
+		{
+			start=size.get();
+			if (start+count>capacity)
+			{
+				INT.setRelease(firstChild, node, UNEXPANDED);
+				return false;
+			}
+		}
+		while (!size.compareAndSet(start, start+count));
+
+		for(int c=start;empty!=0;empty&=empty-1,c++)
+		{
+			parent[c]=node;
+			firstChild[c]=UNEXPANDED;
+			childCount[c]=0;
+			cell[c]=(byte) Long.numberOfTrailingZeros(empty);
+			visits[c]=0;
+			score[c]=0;
+		}
+		childCount[node]=(byte) count;
+		INT.setRelease(firstChild, node, start);
+		return true;
+	}
+
+	/**
+	 * @return the child of {@code node} with the highest UCT value, or its first child without playouts
+	 */
+	private int select(int node, int first)
+	{
+		double logVisits=Math.log(Math.max(1, visits[node]));
+		int best=first;
+		double bestValue=Double.NEGATIVE_INFINITY;
+		for(int c=first;c<first+childCount[node];c++)
+		{
+			int v=visits[c];
+			if (v==0)
+				return c;
+
+			double value=score[c]/(2.0*v)+exploration*Math.sqrt(logVisits/v);
+			if (value>bestValue)
+			{
+				bestValue=value;
+				best=c;
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Adds the playouts of each move from the root to {@code counts}, indexed by cell.
+	 * @param counts
+	 */
+	public void addRootVisits(long[] counts)
+	{
+		int first=firstChild[root];
+		if (first<0)
+			return;
+
+		for(int c=first;c<first+childCount[root];c++)
+			counts[cell[c]]+=visits[c];
+	}
+
+	/**
+	 * @return the number of nodes in use
+	 */
+	public int size()
+	{
+		return size.get();
+	}
+
+	/**
+	 * @return the number of playouts through the root
+	 */
+	public int getRootVisits()
+	{
+		return visits[root];
+	}
+
+	/**
+	 *
+	 * @param cells a bitboard
+	 * @param n
+	 * @return the {@code n}-th (from 0) cell set in {@code cells}, see {@link BatchTTTEnvironment#nthCell}
+	 */
+	static int nthCell(long cells, int n)
+	{
+		for(;n>0;n--)
+			cells&=cells-1;
+
+		return Long.numberOfTrailingZeros(cells);
+	}
+
+}
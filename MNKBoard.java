@@ -0,0 +1,223 @@
+package ticTacToe;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * The shape of an m,n,k-game board: {@code m} rows, {@code n} columns, and {@code k} pieces in a row (horizontally,
+ * vertically or diagonally) to win. Tic-Tac-Toe is the 3,3,3-game. See {@link MNKGame}.
+ *
+ * Cell (x,y), in row x and column y, is bit {@code n*x+y} of a {@code long} bitboard, so boards have at most
+ * {@link #MAX_CELLS} cells (8x8). Everything that only depends on the shape is computed once here and shared by all the
+ * games on the board: the winning lines as bitboards, the lines through each cell, and the Zobrist keys used to hash
+ * games.
+ *
+ */
+public final class MNKBoard {
+
+	/**
+	 * the largest number of cells a board can have
+	 */
+	public static final int MAX_CELLS=64;
+
+	/**
+	 * The Tic-Tac-Toe board
+	 */
+	public static final MNKBoard TIC_TAC_TOE=new MNKBoard(3, 3, 3);
+
+	/**
+	 * the number of rows
+	 */
+	final int m;
+
+	/**
+	 * the number of columns
+	 */
+	final int n;
+
+	/**
+	 * the number of pieces in a row needed to win
+	 */
+	final int k;
+
+	/**
+	 * m*n
+	 */
+	final int cells;
+
+	/**
+	 * the bitboard with all the cells set
+	 */
+	final long full;
+
+	/**
+	 * every line of k cells, as a bitboard
+	 */
+	final long[] lines;
+
+	/**
+	 * linesThrough[c] are the {@link #lines} that contain cell c
+	 */
+	final long[][] linesThrough;
+
+	/**
+	 * zobrist[side][c] is the key of a piece of side {@link Game#X_SIDE} or {@link Game#O_SIDE} in cell c. The hash of a
+	 * game is the xor of the keys of its pieces, and of {@link #sideKey} if O is to move.
+	 */
+	final long[][] zobrist;
+
+	final long sideKey;
+
+	/**
+	 *
+	 * @param m the number of rows
+	 * @param n the number of columns
+	 * @param k the number of pieces in a row to win, at most max(m,n)
+	 * @throws IllegalArgumentException if the board has more than {@link #MAX_CELLS} cells, or no line of k cells
+	 */
+	public MNKBoard(int m, int n, int k)
+	{
+		if (m<1 || n<1 || m*n>MAX_CELLS)
+			throw new IllegalArgumentException("A board has between 1 and "+MAX_CELLS+" cells: "+m+"x"+n);
+
+		if (k<1 || k>Math.max(m, n))
+			throw new IllegalArgumentException("The win length should be between 1 and "+Math.max(m, n)+": "+k);
+
+		this.m=m;
+		this.n=n;
+		this.k=k;
+		this.cells=m*n;
+		this.full=(cells==64)?-1L:(1L<<cells)-1;
+
+		//every direction: right, down, down-right and down-left.
+		int[][] directions={{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+		List<Long> found=new ArrayList<Long>();
+		for(int[] d: directions)
+			for(int x=0;x<m;x++)
+				for(int y=0;y<n;y++)
+				{
+					int endX=x+(k-1)*d[0];
+					int endY=y+(k-1)*d[1];
+					if (endX<0 || endX>=m || endY<0 || endY>=n)
+						continue;
+
+					long line=0;
+					for(int i=0;i<k;i++)
+						line|=1L<<cell(x+i*d[0], y+i*d[1]);
+					//with k=1 all four directions give the same single cell lines
+					if (!found.contains(line))
+						found.add(line);
+				}
+
+		this.lines=new long[found.size()];
+		for(int i=0;i<lines.length;i++)
+			lines[i]=found.get(i);
+
+		this.linesThrough=new long[cells][];
+		for(int c=0;c<cells;c++)
+		{
+			List<Long> through=new ArrayList<Long>();
+			for(long line: lines)
+				if ((line&(1L<<c))!=0)
+					through.add(line);
+
+			linesThrough[c]=new long[through.size()];
+			for(int i=0;i<through.size();i++)
+				linesThrough[c][i]=through.get(i);
+		}
+
+		//fixed seed, so that hashes are the same in every run for a given shape
+		SplittableRandom random=new SplittableRandom(31L*(31L*m+n)+k);
+		this.zobrist=new long[2][cells];
+		for(int side=0;side<2;side++)
+			for(int c=0;c<cells;c++)
+				zobrist[side][c]=random.nextLong();
+		this.sideKey=random.nextLong();
+	}
+
+	public int getRows()
+	{
+		return m;
+	}
+
+	public int getColumns()
+	{
+		return n;
+	}
+
+	public int getWinLength()
+	{
+		return k;
+	}
+
+	public int getCells()
+	{
+		return cells;
+	}
+
+	/**
+	 *
+	 * @param x a row
+	 * @param y a column
+	 * @return the cell index of (x,y), {@code n*x+y}
+	 */
+	public int cell(int x, int y)
+	{
+		return n*x+y;
+	}
+
+	/**
+	 *
+	 * @param x
+	 * @param y
+	 * @return true if (x,y) is a cell of the board
+	 */
+	public boolean contains(int x, int y)
+	{
+		return x>=0 && x<m && y>=0 && y<n;
+	}
+
+	/**
+	 *
+	 * @param bits a player's bitboard
+	 * @param cell a cell of the player
+	 * @return true if the player has a line through {@code cell}, i.e. won by playing there
+	 */
+	boolean winsThrough(long bits, int cell)
+	{
+		for(long line: linesThrough[cell])
+			if ((bits&line)==line)
+				return true;
+
+		return false;
+	}
+
+	/**
+	 * The game state of a board, like {@link Game#evaluate(int, int)}: when both players have a line (not a valid game)
+	 * the one with the first line in {@link #lines} wins.
+	 * @param xBits
+	 * @param oBits
+	 * @return one of {@link Game#DRAW}, {@link Game#ONGOING}, {@link Game#X_WON} or {@link Game#O_WON}
+	 */
+	int evaluate(long xBits, long oBits)
+	{
+		for(long line: lines)
+		{
+			if ((xBits&line)==line)
+				return Game.X_WON;
+			if ((oBits&line)==line)
+				return Game.O_WON;
+		}
+
+		return ((xBits|oBits)==full)?Game.DRAW:Game.ONGOING;
+	}
+
+	@Override
+	public String toString()
+	{
+		return m+","+n+","+k;
+	}
+
+}
@@ -0,0 +1,456 @@
+package ticTacToe;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A game on any {@link MNKBoard}: m rows, n columns, k in a row to win, e.g. 4x4 or 5x5 boards. It is a {@link Game},
+ * so agents, policies, the {@link TTTMDP} and the {@link TTTEnvironment} all work on it as they do on Tic-Tac-Toe;
+ * moves are (row, column) pairs as usual, and cell (x,y) is {@code n*x+y} in {@link #makeMove(int)}.
+ *
+ * The board is stored as two {@code long} bitboards, and hashed with Zobrist keys (see {@link #longHash()}) updated
+ * incrementally on every move, since a base 3 hash like {@link Game#hashCode()} doesn't fit in an int beyond 3x3. After
+ * a move, only the lines through the cell played are checked for a win.
+ *
+ * Symmetry reduction only applies to 3x3 games: an MNKGame is its own canonical game.
+ *
+ */
+public class MNKGame extends Game {
+
+	/**
+	 * the shape of the board
+	 */
+	final MNKBoard board;
+
+	/**
+	 * the bitboards of the cells occupied by X and O: cell (x,y) is bit {@code n*x+y}
+	 */
+	long xs;
+	long os;
+
+	/**
+	 * the xor of the Zobrist keys of the pieces on the board, see {@link MNKBoard#zobrist}
+	 */
+	long zobrist;
+
+	/**
+	 * new game on {@code board} with new X and O agents with null policies
+	 * @param board
+	 */
+	public MNKGame(MNKBoard board)
+	{
+		this(board, new Agent(), new Agent());
+	}
+
+	/**
+	 * New game on {@code board} where x plays first
+	 * @param board
+	 * @param x
+	 * @param o
+	 */
+	public MNKGame(MNKBoard board, Agent x, Agent o)
+	{
+		this(board, x, o, x);
+	}
+
+	/**
+	 * New game on {@code board} where it's whoseTurn's turn to play.
+	 * @param board
+	 * @param x
+	 * @param o
+	 * @param whoseTurn
+	 */
+	public MNKGame(MNKBoard board, Agent x, Agent o, Agent whoseTurn)
+	{
+		super(x, o, whoseTurn);
+		this.board=board;
+	}
+
+	/**
+	 * To deep copy
+	 * @param g
+	 */
+	public MNKGame(MNKGame g)
+	{
+		super(g);
+		this.board=g.board;
+		this.xs=g.xs;
+		this.os=g.os;
+		this.zobrist=g.zobrist;
+	}
+
+	@Override
+	public MNKBoard getShape()
+	{
+		return board;
+	}
+
+	@Override
+	public long getXBits()
+	{
+		return xs;
+	}
+
+	@Override
+	public long getOBits()
+	{
+		return os;
+	}
+
+	@Override
+	public int getRows()
+	{
+		return board.m;
+	}
+
+	@Override
+	public int getColumns()
+	{
+		return board.n;
+	}
+
+	@Override
+	public Game newGame(Agent x, Agent o)
+	{
+		return new MNKGame(board, x, o);
+	}
+
+	/**
+	 * @return the bitboard of the empty cells
+	 */
+	public long emptyMask()
+	{
+		return ~(xs|os)&board.full;
+	}
+
+	/**
+	 * @return the bitboard of the empty cells, see {@link #emptyMask()}
+	 * @throws UnsupportedOperationException if the board has more cells than an int has bits
+	 */
+	@Override
+	public int emptyCells()
+	{
+		if (board.cells>Integer.SIZE)
+			throw new UnsupportedOperationException("The board has "+board.cells+" cells: use emptyMask()");
+
+		return (int) emptyMask();
+	}
+
+	/**
+	 * @return the bitboard of the legal moves, bit {@code n*x+y} for cell (x,y), 0 if the game is over
+	 * @throws UnsupportedOperationException if the board has more cells than an int has bits: use {@link #emptyMask()}
+	 */
+	@Override
+	public int legalMoveMask()
+	{
+		if (board.cells>Integer.SIZE)
+			throw new UnsupportedOperationException("legalMoveMask() is an int, and the "+board+" board has "+board.cells
+					+" cells: use emptyMask()");
+
+		return (getState()==ONGOING)?(int) emptyMask():0;
+	}
+
+	/**
+	 * @return a new move of the side to move into {@code cell}, {@code n*x+y}: moves are only interned on 3x3 boards
+	 */
+	@Override
+	public Move moveOf(int cell)
+	{
+		return new Move(whoseTurn, cell/board.n, cell%board.n);
+	}
+
+	@Override
+	public char getCell(int x, int y)
+	{
+		long bit=1L<<board.cell(x, y);
+		if ((xs&bit)!=0)
+			return 'X';
+		if ((os&bit)!=0)
+			return 'O';
+		return ' ';
+	}
+
+	@Override
+	void setCell(int x, int y, char c)
+	{
+		int cell=board.cell(x, y);
+		long bit=1L<<cell;
+		if ((xs&bit)!=0)
+			zobrist^=board.zobrist[X_SIDE][cell];
+		else if ((os&bit)!=0)
+			zobrist^=board.zobrist[O_SIDE][cell];
+
+		xs&=~bit;
+		os&=~bit;
+		if (c=='X')
+		{
+			xs|=bit;
+			zobrist^=board.zobrist[X_SIDE][cell];
+		}
+		else if (c=='O')
+		{
+			os|=bit;
+			zobrist^=board.zobrist[O_SIDE][cell];
+		}
+	}
+
+	/**
+	 * Plays the side to move into {@code cell} (i.e. {@code n*x+y}) in place and passes the turn. Only the lines through
+	 * {@code cell} are checked for a win, so the game is assumed to be ongoing. No objects are allocated.
+	 * @param cell the cell index
+	 */
+	@Override
+	public void makeMove(int cell)
+	{
+		long bit=1L<<cell;
+		long bits;
+		if (side==X_SIDE)
+			bits=(xs|=bit);
+		else
+			bits=(os|=bit);
+
+		zobrist^=board.zobrist[side][cell];
+		if (board.winsThrough(bits, cell))
+			state=(side==X_SIDE)?X_WON:O_WON;
+		else if ((xs|os)==board.full)
+			state=DRAW;
+		else
+			state=ONGOING;
+
+		setSide(side^1);
+	}
+
+	/**
+	 * Takes back the last move played into {@code cell} by {@link #makeMove(int)}. The game was ongoing before it.
+	 * @param cell the cell index
+	 */
+	@Override
+	public void unmakeMove(int cell)
+	{
+		setSide(side^1);
+		if (side==X_SIDE)
+			xs&=~(1L<<cell);
+		else
+			os&=~(1L<<cell);
+
+		zobrist^=board.zobrist[side][cell];
+		state=ONGOING;
+	}
+
+	@Override
+	public boolean isLegal(Move m)
+	{
+		if (!board.contains(m.x, m.y))
+			return false;
+
+		if (m.who.getName()!=whoseTurn.getName())
+			return false;
+
+		return getCell(m.x, m.y)==' ';
+	}
+
+	/**
+	 * Checks that {@code m} can be played by the side to move
+	 */
+	private void check(Move m) throws IllegalMoveException
+	{
+		if (whoseTurn==x && m.who.getName()!='X')
+			throw new IllegalMoveException("it is not x's turn");
+
+		if (whoseTurn==o && m.who.getName()!='O')
+			throw new IllegalMoveException("it is not o's turn");
+
+		if (!board.contains(m.x, m.y))
+			throw new IllegalMoveException("Invalid move. The location ("+m.x+","+m.y+") is not on the "+board+" board");
+
+		if (getCell(m.x, m.y)!=' ')
+			throw new IllegalMoveException("Invalid move. The location ("+m.x+","+m.y+") is not empty");
+	}
+
+	@Override
+	public Game simulateMove(Move m) throws IllegalMoveException
+	{
+		check(m);
+		Game copy=clone();
+		copy.makeMove(board.cell(m.x, m.y));
+		return copy;
+	}
+
+	@Override
+	public void executeMove(Move m) throws IllegalMoveException
+	{
+		check(m);
+		makeMove(board.cell(m.x, m.y));
+	}
+
+	@Override
+	public List<Game> getAllSuccessorGames()
+	{
+		List<Game> result=new ArrayList<Game>();
+		for(long empty=emptyMask();empty!=0;empty&=empty-1)
+		{
+			Game newGame=new MNKGame(this);
+			newGame.makeMove(Long.numberOfTrailingZeros(empty));
+			result.add(newGame);
+		}
+
+		return result;
+	}
+
+	@Override
+	public List<Move> getPossibleMoves()
+	{
+		return moves(whoseTurn.getName());
+	}
+
+	@Override
+	public List<Move> getPossibleMovesByOpponent()
+	{
+		return moves((whoseTurn.getName()=='X')?'O':'X');
+	}
+
+	private List<Move> moves(char who)
+	{
+		List<Move> possibleMoves=new ArrayList<Move>();
+		if (getState()!=ONGOING)
+			return possibleMoves;
+
+		for(long empty=emptyMask();empty!=0;empty&=empty-1)
+		{
+			int cell=Long.numberOfTrailingZeros(empty);
+			Move m=(who==whoseTurn.getName())?new Move(whoseTurn, cell/board.n, cell%board.n):new Move(who, cell/board.n, cell%board.n);
+			possibleMoves.add(m);
+		}
+
+		return possibleMoves;
+	}
+
+	@Override
+	public char[][] getBoard()
+	{
+		char[][] result=new char[board.m][board.n];
+		for(int i=0;i<board.m;i++)
+			for(int j=0;j<board.n;j++)
+				result[i][j]=getCell(i, j);
+		return result;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder result=new StringBuilder("\n");
+		for(int i=0;i<board.m;i++)
+		{
+			result.append('|');
+			for(int j=0;j<board.n;j++)
+				result.append(getCell(i, j)).append('|');
+			result.append('\n');
+		}
+
+		return result.toString();
+	}
+
+	@Override
+	public int evaluateGameState()
+	{
+		this.state=board.evaluate(xs, os);
+		return this.state;
+	}
+
+	@Override
+	public boolean isValid()
+	{
+		int xCount=Long.bitCount(xs);
+		int oCount=Long.bitCount(os);
+		if (Math.abs(xCount-oCount)>1)
+			return false;
+
+		if (xCount>oCount && whoseTurn.getName()=='X')
+			return false;
+		else if (xCount<oCount && whoseTurn.getName()=='O')
+			return false;
+
+		return true;
+	}
+
+	@Override
+	public Game clone()
+	{
+		return new MNKGame(this);
+	}
+
+	/**
+	 * @return the 64-bit Zobrist hash of the game: the board and the side to move
+	 */
+	@Override
+	public long longHash()
+	{
+		return (side==O_SIDE)?zobrist^board.sideKey:zobrist;
+	}
+
+	/**
+	 * @return {@link #longHash()} folded into an int. Unlike {@link Game#hashCode()}, different games can have the same
+	 * hash, so it can't be inverted or used as a state id.
+	 */
+	@Override
+	public int hashCode()
+	{
+		long h=longHash();
+		return (int) (h^(h>>>32));
+	}
+
+	/**
+	 * @return false: the hash is a folded Zobrist hash, see {@link #hashCode()}
+	 */
+	@Override
+	public boolean hasBase3Hash()
+	{
+		return false;
+	}
+
+	@Override
+	public boolean equals(Object other)
+	{
+		if (!(other instanceof MNKGame))
+			return false;
+
+		MNKGame g=(MNKGame) other;
+		return board==g.board && xs==g.xs && os==g.os && side==g.side;
+	}
+
+	/**
+	 * @return {@link Symmetry#IDENTITY}: symmetries are only used on 3x3 games
+	 */
+	@Override
+	public int canonicalTransform()
+	{
+		return Symmetry.IDENTITY;
+	}
+
+	@Override
+	public int canonicalHash()
+	{
+		return hashCode();
+	}
+
+	/**
+	 * @throws UnsupportedOperationException unless {@code t} is {@link Symmetry#IDENTITY}
+	 */
+	@Override
+	public Game transform(int t)
+	{
+		if (t!=Symmetry.IDENTITY)
+			throw new UnsupportedOperationException("Symmetries are only supported on 3x3 boards");
+
+		return clone();
+	}
+
+	public static void main(String a[]) throws IllegalMoveException
+	{
+		//Test method: an aggressive agent against a defensive one, on a 5x5 board with 4 in a row to win.
+		MNKGame g=new MNKGame(new MNKBoard(5, 5, 4), new AggressiveAgent(), new DefensiveAgent());
+		g.playOut();
+	}
+
+}
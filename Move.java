@@ -7,22 +7,44 @@ package ticTacToe;
  */
 public class Move {
 	
+	/**
+	 * The agents of the moves made by 'X' or 'O' rather than by a given agent: see {@link Move#Move(char, int, int)}. Their
+	 * names can't be changed, since they are shared by all these moves.
+	 */
+	static final Agent X=new Side('X');
+	static final Agent O=new Side('O');
+	
+	/**
+	 * The interned moves on a 3x3 board, one per side ({@link Game#X_SIDE} or {@link Game#O_SIDE}) and cell {@code 3*x+y},
+	 * see {@link #of(char, int)}
+	 */
+	private static final Move[][] MOVES=new Move[2][9];
+	
+	static
+	{
+		for(int cell=0;cell<9;cell++)
+		{
+			MOVES[Game.X_SIDE][cell]=new Move('X', cell/3, cell%3);
+			MOVES[Game.O_SIDE][cell]=new Move('O', cell/3, cell%3);
+		}
+	}
+	
 	/**
 	 * can be either 'X', or 'O' 
 	 */
-	public Agent who;
-	public int x;
-	public int y;
+	public final Agent who;
+	public final int x;
+	public final int y;
 	
 	public Move(char who, int x, int y)
 	{
 		if (who!='X' && who!='O')
 			throw new IllegalArgumentException("Can only be a move by X or by O");
 		
-		this.who=new Agent();
-		this.who.setName(who);
+		this.who=(who=='X')?X:O;
 		
-		if (x<0 || x>2 || y<0 || y>2)
+		//the upper bounds depend on the board, and are checked by the game
+		if (x<0 || y<0)
 			throw new IllegalArgumentException("Invalid x or y coordinates");
 		this.x=x;
 		this.y=y;
@@ -36,7 +58,8 @@ public class Move {
 		
 		this.who=who;
 		
-		if (x<0 || x>2 || y<0 || y>2)
+		//the upper bounds depend on the board, and are checked by the game
+		if (x<0 || y<0)
 			throw new IllegalArgumentException("Invalid x or y coordinates");
 		this.x=x;
 		this.y=y;
@@ -49,6 +72,41 @@ public class Move {
 	
 	}
 	
+	/**
+	 * The interned move of {@code who} into {@code cell} on a 3x3 board. Moves are immutable, so these can be shared
+	 * instead of allocating a new move each time.
+	 * @param who either 'X' or 'O'
+	 * @param cell {@code 3*x+y}, between 0 and 8 inclusive
+	 * @return
+	 */
+	public static Move of(char who, int cell)
+	{
+		if (who!='X' && who!='O')
+			throw new IllegalArgumentException("Can only be a move by X or by O");
+		
+		if (cell<0 || cell>8)
+			throw new IllegalArgumentException("Invalid cell:"+cell);
+		
+		return MOVES[(who=='X')?Game.X_SIDE:Game.O_SIDE][cell];
+	}
+	
+	/**
+	 * The agent of the moves made by 'X' or 'O', whose name is fixed
+	 */
+	private static final class Side extends Agent {
+		
+		Side(char name)
+		{
+			this.name=name;
+		}
+		
+		@Override
+		public void setName(char n)
+		{
+			throw new UnsupportedOperationException("The agent of a move by "+name+" can't be renamed");
+		}
+	}
+	
 	public String toString()
 	{
 		return who+"("+x+","+y+")";
@@ -0,0 +1,111 @@
+package ticTacToe;
+
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the legal moves of a 3x3 game, from its {@link Game#legalMoveMask()}, in increasing cell order (the order
+ * of {@link Game#getPossibleMoves()}), without allocating: {@link #next()} returns the interned moves of
+ * {@link Move#of(char, int)}, and {@link #nextCell()} just the cell. The iterator is meant to be kept and {@link #reset}
+ * for each game, e.g. one per agent or per thread.
+ *
+ * <pre>
+ * for(it.reset(g);it.hasNext();)
+ * {
+ *     Move m=it.next();
+ *     ...
+ * }
+ * </pre>
+ *
+ */
+public final class MoveIterator implements Iterator<Move> {
+
+	/**
+	 * the cells left
+	 */
+	private int remaining;
+
+	/**
+	 * 'X' or 'O'
+	 */
+	private char who;
+
+	/**
+	 * An iterator with no moves, until {@link #reset}
+	 */
+	public MoveIterator()
+	{
+		this.who='X';
+	}
+
+	public MoveIterator(Game g)
+	{
+		reset(g);
+	}
+
+	/**
+	 * Starts over on the legal moves of {@code g}, by the side to move
+	 * @param g a 3x3 game
+	 * @return this iterator
+	 * @throws IllegalArgumentException if {@code g} isn't a 3x3 {@link Game} (see {@link Game#hasBase3Hash()}), e.g. an
+	 * {@link MNKGame}, whose moves aren't interned
+	 */
+	public MoveIterator reset(Game g)
+	{
+		if (!g.hasBase3Hash())
+			throw new IllegalArgumentException("Can only iterate over the moves of a 3x3 Game, not of an MNKGame: use MNKGame.emptyMask()");
+
+		return reset(g.legalMoveMask(), g.whoseTurn.getName());
+	}
+
+	/**
+	 * Starts over on the moves of {@code who} into the cells of {@code mask}
+	 * @param mask a bitboard, bit {@code 3*x+y} for cell (x,y)
+	 * @param who either 'X' or 'O'
+	 * @return this iterator
+	 */
+	public MoveIterator reset(int mask, char who)
+	{
+		if (who!='X' && who!='O')
+			throw new IllegalArgumentException("Can only be a move by X or by O");
+
+		this.remaining=mask&Game.FULL;
+		this.who=who;
+		return this;
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return remaining!=0;
+	}
+
+	/**
+	 * @return the cell of the next move, {@code 3*x+y}
+	 */
+	public int nextCell()
+	{
+		if (remaining==0)
+			throw new NoSuchElementException();
+
+		int cell=Integer.numberOfTrailingZeros(remaining);
+		remaining&=remaining-1;
+		return cell;
+	}
+
+	@Override
+	public Move next()
+	{
+		return Move.of(who, nextCell());
+	}
+
+	/**
+	 * @return the number of moves left
+	 */
+	public int remaining()
+	{
+		return Integer.bitCount(remaining);
+	}
+
+}
@@ -0,0 +1,52 @@
+package ticTacToe;
+
+/**
+ * Runs {@link QLearningAgent#trainParallel} with 1, 2, 4, ... threads up to the number of cores (or the given maximum),
+ * and prints the episodes per second and the learning curve (average return per {@link QLearningAgent#curveInterval}
+ * episodes, averaged over the actor threads) of each thread count as CSV.
+ *
+ * Usage: ParallelQLearningReport [episodes] [max threads]
+ *
+ */
+public class ParallelQLearningReport {
+
+	public static void main(String[] args) throws InterruptedException
+	{
+		int episodes=(args.length>0)?Integer.parseInt(args[0]):1000000;
+		int maxThreads=(args.length>1)?Integer.parseInt(args[1]):Runtime.getRuntime().availableProcessors();
+
+		System.out.println("threads,episodes,episodes_per_second,curve");
+		for(int threads=1;threads<=maxThreads;threads*=2)
+		{
+			//train for 0 episodes in the constructor, then in parallel.
+			QLearningAgent agent=new QLearningAgent(new RandomAgent(), 0.1, 0, 0.9);
+			agent.numEpisodes=episodes;
+			agent.trainParallel(threads);
+
+			System.out.println(threads+","+episodes+","+Math.round(agent.getEpisodesPerSecond())+","+averageCurve(agent.getLearningCurves()));
+		}
+	}
+
+	/**
+	 *
+	 * @param curves the learning curve of each thread
+	 * @return the curves averaged point by point, separated by spaces.
+	 */
+	static String averageCurve(double[][] curves)
+	{
+		StringBuilder result=new StringBuilder();
+		for(int i=0;i<curves[curves.length-1].length;i++)
+		{
+			double sum=0;
+			for(double[] curve: curves)
+				sum+=curve[i];
+
+			if (i>0)
+				result.append(' ');
+			result.append(String.format("%.3f", sum/curves.length));
+		}
+
+		return result.toString();
+	}
+
+}
@@ -1,20 +1,56 @@
 package ticTacToe;
 
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
+import java.util.zip.CRC32;
 
 /**
  * A Tic Tac Toe Policy implemented via a HashMap
+ * 
+ * Policies can be saved to, and loaded from, a binary file with {@link #save(String)} and {@link #Policy(String)}. The
+ * file is a {@link #HEADER_SIZE} byte header: the {@link #MAGIC} number (int), the format {@link #VERSION} (short), a 
+ * reserved short, the number of moves stored (int) and the CRC32 checksum of the moves (int); followed by one byte per
+ * {@link Game#hashCode}: the cell {@code 3*x+y} of the move in that game, or {@link #NO_MOVE}. All numbers are big-endian.
  * @author ae187
  *
  */
 public class Policy {
 	
+	/**
+	 * The first four bytes of a policy file: "TTTP"
+	 */
+	public static final int MAGIC=0x54545450;
+	
+	/**
+	 * The version of the policy file format written by {@link #save(String)}
+	 */
+	public static final short VERSION=1;
+	
+	public static final int HEADER_SIZE=16;
+	
+	/**
+	 * The move byte of games where the policy has no move
+	 */
+	public static final byte NO_MOVE=-1;
+	
 	/**
 	 * a hash map that stores the policy
 	 */
 	HashMap<Game, Move> policy=new HashMap<Game, Move>();
 	
+	/**
+	 * The moves of a policy loaded from file, one byte per game hash: a read-only view of the memory-mapped file. Null if
+	 * the policy wasn't loaded from file.
+	 */
+	ByteBuffer moves;
+	
 	/**
 	 * Create policy according to this map
 	 * @param policy
@@ -32,9 +68,23 @@ public class Policy {
 	 *  
 	 * @param g
 	 * @return
+	 * @throws IllegalArgumentException if the policy was loaded from file and {@code g} has no base 3 hash (see
+	 * {@link Game#hasBase3Hash()}), e.g. an {@link MNKGame}, even on a 3x3 board: the file is indexed by that hash
 	 */
 	public Move getMove(Game g) {
 		
+		if (moves!=null)
+		{
+			if (!g.hasBase3Hash())
+				throw new IllegalArgumentException("A policy file only has moves for 3x3 Games, not for an MNKGame on a "+g.getShape()+" board");
+			
+			byte cell=moves.get(g.hashCode());
+			if (cell==NO_MOVE)
+				return null;
+			
+			return g.moveOf(cell);
+		}
+		
 		if (policy.containsKey(g))
 			return policy.get(g);
 		
@@ -48,13 +98,76 @@ public class Policy {
 	 * specifies the action/move determined by the policy in a particular game state. The game states should not
 	 * explicitly stored, only their hashes are stored. The {@link Game} object itself can be constructed using the 
 	 * {@link Game#inverseHash} method.
+	 * 
+	 * The file, written by {@link #save(String)}, is memory-mapped read-only and moves are read straight from it, so 
+	 * loading costs about as much as checking the checksum, and processes loading the same file share its pages.
 	 *  
 	 * @param file
+	 * @throws IllegalArgumentException if the file is not a valid policy file
+	 * @throws UncheckedIOException if the file can't be read
 	 */
 	public Policy(String file)
 	{
-		/* implement this constructor to load a stored policy from file. */
+		try (FileChannel channel=FileChannel.open(Paths.get(file), StandardOpenOption.READ))
+		{
+			if (channel.size()<HEADER_SIZE)
+				throw new IllegalArgumentException("Not a policy file:"+file);
+			
+			ByteBuffer buffer=channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt(0)!=MAGIC)
+				throw new IllegalArgumentException("Not a policy file:"+file);
+			
+			if (buffer.getShort(4)!=VERSION)
+				throw new IllegalArgumentException("Unsupported policy file version "+buffer.getShort(4)+" in "+file);
+			
+			int count=buffer.getInt(8);
+			if (count!=Game.NUM_HASHES || channel.size()!=HEADER_SIZE+count)
+				throw new IllegalArgumentException("Truncated or corrupt policy file:"+file);
+			
+			this.moves=buffer.position(HEADER_SIZE).slice().asReadOnlyBuffer();
+			CRC32 crc=new CRC32();
+			crc.update(moves.duplicate());
+			if ((int) crc.getValue()!=buffer.getInt(12))
+				throw new IllegalArgumentException("Checksum mismatch in policy file:"+file);
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException("Could not read policy file "+file, e);
+		}
+		
+	}
+	
+	/**
+	 * Saves this policy to {@code file} in the binary format described above, so that it can be loaded with 
+	 * {@link #Policy(String)}. The move of every valid, ongoing game is looked up with {@link #getMove(Game)}.
+	 * @param file
+	 * @throws IOException
+	 */
+	public void save(String file) throws IOException
+	{
+		ByteBuffer buffer=ByteBuffer.allocate(HEADER_SIZE+Game.NUM_HASHES);
+		for(int h=0;h<Game.NUM_HASHES;h++)
+		{
+			byte cell=NO_MOVE;
+			Game g=Game.inverseHash(h);
+			if (g!=null && g.isValid() && g.evaluateGameState()==Game.ONGOING)
+			{
+				Move m=getMove(g);
+				if (m!=null)
+					cell=(byte) (3*m.x+m.y);
+			}
+			buffer.put(HEADER_SIZE+h, cell);
+		}
+		
+		CRC32 crc=new CRC32();
+		crc.update(buffer.array(), HEADER_SIZE, Game.NUM_HASHES);
+		buffer.putInt(0, MAGIC);
+		buffer.putShort(4, VERSION);
+		buffer.putShort(6, (short) 0);
+		buffer.putInt(8, Game.NUM_HASHES);
+		buffer.putInt(12, (int) crc.getValue());
 		
+		Files.write(Paths.get(file), buffer.array());
 	}
 
 	
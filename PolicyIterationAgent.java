@@ -34,13 +34,42 @@ public class PolicyIterationAgent extends Agent {
 	
 	double discount=0.9;
 	
+	/**
+	 * if true, only canonical games are planned for (see {@link Game#canonical()}), which cuts the number of states by up 
+	 * to 8. The policy then looks moves up through each game's canonical representative, see {@link CanonicalPolicy}.
+	 */
+	boolean symmetric=false;
+	
 	/**
 	 * The mdp model used, see {@link TTTMDP}
 	 */
 	TTTMDP mdp;
 	
 	/**
-	 * loads the policy from file if one exists. Policies should be stored in .pol files directly under the project folder.
+	 * The dense index of the states in {@link #policyValues}
+	 */
+	StateIndex index;
+	
+	/**
+	 * The {@link #mdp} compiled over {@link #index}. Policy evaluation and improvement run on this model.
+	 */
+	CompiledMDP model;
+	
+	/**
+	 * The values of the states under the current policy, by state id. {@link #policyValues} is updated from this 
+	 * array at the end of {@link #train}.
+	 */
+	double[] values;
+	
+	/**
+	 * The current policy as an action id of {@link #model} per state id, or -1 for states with no moves. 
+	 * {@link #curPolicy} is kept in sync with it.
+	 */
+	int[] policyActions;
+	
+	/**
+	 * Trains the agent offline first and sets its policy. To play a policy saved earlier instead, use
+	 * {@link #PolicyIterationAgent(String)}.
 	 */
 	public PolicyIterationAgent() {
 		
@@ -49,8 +78,6 @@ public class PolicyIterationAgent extends Agent {
 		initValues();
 		initRandomPolicy();
 		train();
-		
-		this.policy = new Policy(curPolicy); 
 	}
 	
 	
@@ -62,6 +89,17 @@ public class PolicyIterationAgent extends Agent {
 		super(p);
 		
 	}
+	
+	/**
+	 * Initialises the agent with the policy saved in {@code policyFile} (see {@link Agent#savePolicyToFile()}), without
+	 * training.
+	 * @param policyFile
+	 * @throws IllegalArgumentException if the file is not a valid policy file
+	 * @throws java.io.UncheckedIOException if the file can't be read
+	 */
+	public PolicyIterationAgent(String policyFile) {
+		this(new Policy(policyFile));
+	}
 
 	/**
 	 * Use this constructor to initialise a learning agent with default MDP paramters (rewards, transitions, etc) as specified in 
@@ -76,6 +114,21 @@ public class PolicyIterationAgent extends Agent {
 		initRandomPolicy();
 		train();
 	}
+	
+	/**
+	 * Trains the agent on the states reduced by symmetry if {@code symmetric} is true, see {@link #symmetric}
+	 * @param discountFactor
+	 * @param symmetric
+	 */
+	public PolicyIterationAgent(double discountFactor, boolean symmetric) {
+		
+		this.discount=discountFactor;
+		this.symmetric=symmetric;
+		this.mdp=new TTTMDP();
+		initValues();
+		initRandomPolicy();
+		train();
+	}
 	/**
 	 * Use this constructor to set the various parameters of the Tic-Tac-Toe MDP
 	 * @param discountFactor
@@ -100,8 +153,12 @@ public class PolicyIterationAgent extends Agent {
 	public void initValues()
 	{
 		List<Game> allGames=Game.generateAllValidGames('X');//all valid games where it is X's turn, or it's terminal.
-		for(Game g: allGames)
-			this.policyValues.put(g, 0.0);
+		this.index=new StateIndex(allGames, symmetric);
+		for(int s=0;s<index.size();s++)
+			this.policyValues.put(index.getGame(s), 0.0);
+		
+		this.values=new double[index.size()];
+		this.model=mdp.compile(index);
 		
 	}
 	
@@ -119,15 +176,16 @@ public class PolicyIterationAgent extends Agent {
 	public void initRandomPolicy() {
 		
 		Random random = new Random();
-	    List<Game> allGames = Game.generateAllValidGames('X');
+		policyActions = new int[index.size()];
 
-	    for (Game g : allGames) {
-	        List<Move> possibleMoves = g.getPossibleMoves();
-	        if (!possibleMoves.isEmpty()) {
-	            int randomIndex = random.nextInt(possibleMoves.size());
-	            Move randomMove = possibleMoves.get(randomIndex);
-	            curPolicy.put(g, randomMove);
-	        }
+	    for (int s = 0; s < policyActions.length; s++) {
+	        int first = model.firstAction(s);
+	        int end = model.endAction(s);
+	        if (first < end) {
+	            policyActions[s] = first + random.nextInt(end - first);
+	            curPolicy.put(index.getGame(s), model.getMove(policyActions[s]));
+	        } else
+	            policyActions[s] = -1;
 	    }
 		
 	    }
@@ -146,55 +204,38 @@ public class PolicyIterationAgent extends Agent {
 		protected void evaluatePolicy(double delta) {
 		    
 			double maxChange;
-			maxChange = 0.0;
 			
-			while (maxChange < delta){
+			do {
+				maxChange = 0.0;
 		       
-		        for (Game game : policyValues.keySet()) {
-		            double oldValue = policyValues.get(game);
-		            double newValue = calculateStateValue(game);
+		        for (int s = 0; s < values.length; s++) {
+		            double oldValue = values[s];
+		            double newValue = calculateStateValue(s);
 
-		            policyValues.put(game, newValue);
+		            values[s] = newValue;
 
 		            maxChange = Math.max(maxChange, Math.abs(newValue - oldValue));
 		        }
-		    } 
+		        
+		        if (listener != null)
+		            listener.record(TrainingListener.RESIDUAL, sweeps, maxChange);
+		        sweeps++;
+		    } while (maxChange >= delta);
 		}
 
 
 	
 	
 	// Helper method to calculate the new value of a state under the current policy
-		private double calculateStateValue(Game game) {
+		private double calculateStateValue(int s) {
 		   
-			Move currentMove = curPolicy.get(game);
+			int currentAction = policyActions[s];
 
-		    if (currentMove == null) {
+		    if (currentAction < 0) {
 		        return 0.0;
 		    }
 
-		    List<TransitionProb> transitions = mdp.generateTransitions(game, currentMove);
-
-		    if (transitions == null) {
-		        return 0.0;
-		    }
-
-		    double newValue = 0.0;
-
-		    for (TransitionProb transition : transitions) {
-		        Outcome outcome = transition.outcome;
-
-		        if (outcome != null) {
-		            double probability = transition.prob;
-
-		            if (outcome.sPrime != null) {
-		                double nextStateValue = policyValues.getOrDefault(outcome.sPrime, 0.0);
-		                newValue += probability * (outcome.localReward + discount * nextStateValue);
-		            }
-		        }
-		    }
-
-		    return newValue;
+		    return model.qValue(currentAction, values, discount);
 		}
 	
 	/**This method should be run AFTER the {@link PolicyIterationAgent#evaluatePolicy} train method to improve the current policy according to 
@@ -205,31 +246,31 @@ public class PolicyIterationAgent extends Agent {
 	 */
 		protected boolean improvePolicy() {
 		    boolean policyImproved = false;
+		    policyChanges = 0;
 
-		    for (Game game : curPolicy.keySet()) {
-		        Move currentMove = curPolicy.get(game);
-		        List<TransitionProb> transitions = mdp.generateTransitions(game, currentMove);
-		        double maxExpectedValue = Double.NEGATIVE_INFINITY;
-		        Move bestMove = null;
+		    for (int s = 0; s < policyActions.length; s++) {
+		        int currentAction = policyActions[s];
+		        if (currentAction < 0)
+		            continue;
 
-		        for (TransitionProb transition : transitions) {
-		            Outcome outcome = transition.outcome;
+		        // the current move is only replaced by a strictly better one, so that ties can't make the policy cycle
+		        double maxExpectedValue = model.qValue(currentAction, values, discount);
+		        int bestAction = currentAction;
 
-		            if (outcome != null && outcome.move != null) { 
-		                double probability = transition.prob;
-		                double nextStateValue = policyValues.get(outcome.sPrime);
-		                double expectedValue = probability * (outcome.localReward + discount * nextStateValue);
+		        for (int a = model.firstAction(s); a < model.endAction(s); a++) {
+		            double expectedValue = model.qValue(a, values, discount);
 
-		                if (expectedValue > maxExpectedValue) {
-		                    maxExpectedValue = expectedValue;
-		                    bestMove = outcome.move;
-		                }
+		            if (expectedValue > maxExpectedValue) {
+		                maxExpectedValue = expectedValue;
+		                bestAction = a;
 		            }
 		        }
 
-		        if (bestMove != null && !bestMove.equals(currentMove)) {
-		            curPolicy.put(game, bestMove);
+		        if (bestAction != currentAction) {
+		            policyActions[s] = bestAction;
+		            curPolicy.put(index.getGame(s), model.getMove(bestAction));
 		            policyImproved = true;
+		            policyChanges++;
 		        }
 		    }
 
@@ -242,6 +283,16 @@ public class PolicyIterationAgent extends Agent {
 	 */
 	double delta=0.1;
 	
+	/**
+	 * The number of policy evaluation sweeps since the start of the last call to {@link #train}
+	 */
+	int sweeps;
+	
+	/**
+	 * The number of states whose action changed in the last call to {@link #improvePolicy}
+	 */
+	int policyChanges;
+	
 	/**
 	 * This method should perform policy evaluation and policy improvement steps until convergence (i.e. until the policy
 	 * no longer changes), and so uses your 
@@ -249,11 +300,35 @@ public class PolicyIterationAgent extends Agent {
 	 */
 	public void train() {
 
-        while (improvePolicy()) {
-            evaluatePolicy(delta);
-        }
+        sweeps = 0;
+        int improvement = 0;
+        long start = System.nanoTime();
+        evaluatePolicy(delta);
+        if (listener != null)
+            listener.record(TrainingListener.TIME_EVALUATE, improvement, (System.nanoTime() - start) / 1e6);
+
+        boolean improved;
+        do {
+            start = System.nanoTime();
+            improved = improvePolicy();
+            if (listener != null) {
+                listener.record(TrainingListener.TIME_IMPROVE, improvement, (System.nanoTime() - start) / 1e6);
+                listener.record(TrainingListener.POLICY_CHANGES, improvement, policyChanges);
+            }
+            improvement++;
+
+            if (improved) {
+                start = System.nanoTime();
+                evaluatePolicy(delta);
+                if (listener != null)
+                    listener.record(TrainingListener.TIME_EVALUATE, improvement, (System.nanoTime() - start) / 1e6);
+            }
+        } while (improved);
+
+        for (int s = 0; s < values.length; s++)
+            policyValues.put(index.getGame(s), values[s]);
 
-        this.policy = new Policy(curPolicy);
+        this.policy = symmetric ? new CanonicalPolicy(curPolicy) : new Policy(curPolicy);
     }
 	
 	public Policy getPolicy() {
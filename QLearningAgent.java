@@ -2,6 +2,7 @@ package ticTacToe;
 
 //import java.util.HashMap;
 import java.util.List;
+import java.util.Random;
 
 /**
  * A Q-Learning agent with a Q-Table, i.e. a table of Q-Values. This table is implemented in the {@link QTable} class.
@@ -39,13 +40,24 @@ public class QLearningAgent extends Agent {
 	 */
 	double epsilon=0.1;
 	
+	/**
+	 * if true, the q-table only holds canonical games (see {@link Game#canonical()}), which cuts its size by up to 8 and
+	 * shares what is learnt in a game with all its symmetric games. 
+	 */
+	boolean symmetric=false;
+	
 	/**
 	 * This is the Q-Table. To get an value for an (s,a) pair, i.e. a (game, move) pair.
-	 * 
+	 * It is backed by {@link #qValues}, which the agent itself uses when training.
 	 */
 	
 	QTable qTable=new QTable();
 	
+	/**
+	 * The primitive q-values, indexed by state id and cell. See {@link ArrayQTable}.
+	 */
+	ArrayQTable qValues;
+	
 	
 	/**
 	 * This is the Reinforcement Learning environment that this agent will interact with when it is training.
@@ -54,6 +66,32 @@ public class QLearningAgent extends Agent {
 	 */
 	TTTEnvironment env=new TTTEnvironment();
 	
+	/**
+	 * The random number generator of the epsilon greedy policy in {@link #train}
+	 */
+	Random random=new Random();
+	
+	/**
+	 * The number of episodes averaged into each point of the {@link #learningCurves}
+	 */
+	int curveInterval=1000;
+	
+	/**
+	 * Episodes played per second by the last call to {@link #trainParallel}
+	 */
+	double episodesPerSecond;
+	
+	/**
+	 * The learning curve of each actor thread in the last call to {@link #trainParallel}: {@code learningCurves[t][i]} is the
+	 * average return of thread {@code t} over its episodes {@code i*curveInterval} to {@code (i+1)*curveInterval-1}.
+	 */
+	double[][] learningCurves;
+	
+	/**
+	 * The experience replay buffer, see {@link #trainWithReplay}. Null until set or first used.
+	 */
+	ReplayBuffer replay;
+	
 	
 	/**
 	 * Construct a Q-Learning agent that learns from interactions with {@code opponent}.
@@ -71,6 +109,21 @@ public class QLearningAgent extends Agent {
 		train();
 	}
 	
+	/**
+	 * Same as {@link #QLearningAgent(Agent, double, int, double)}, learning on the states reduced by symmetry if 
+	 * {@code symmetric} is true, see {@link #symmetric}.
+	 */
+	public QLearningAgent(Agent opponent, double learningRate, int numEpisodes, double discount, boolean symmetric)
+	{
+		env=new TTTEnvironment(opponent);
+		this.alpha=learningRate;
+		this.numEpisodes=numEpisodes;
+		this.discount=discount;
+		this.symmetric=symmetric;
+		initQTable();
+		train();
+	}
+	
 	/**
 	 * Initialises all valid q-values -- Q(g,m) -- to 0.
 	 *  
@@ -79,17 +132,10 @@ public class QLearningAgent extends Agent {
 	protected void initQTable()
 	{
 		List<Game> allGames=Game.generateAllValidGames('X');//all valid games where it is X's turn, or it's terminal.
-		for(Game g: allGames)
-		{
-			List<Move> moves=g.getPossibleMoves();
-			for(Move m: moves)
-			{
-				this.qTable.addQValue(g, m, 0.0);
-				//System.out.println("initing q value. Game:"+g);
-				//System.out.println("Move:"+m);
-			}
-			
-		}
+		//all q-values start at 0
+		this.qValues=new ArrayQTable(new StateIndex(allGames, symmetric));
+		this.qTable=new QTable(qValues);
+		this.policy=new GreedyPolicy(qValues);
 		
 	}
 	
@@ -108,27 +154,31 @@ public class QLearningAgent extends Agent {
 	 *  to the Q-Learning algorithm as required. The agent should play according to an epsilon-greedy policy where with the probability {@code epsilon} the
 	 *  agent explores, and with probability {@code 1-epsilon}, it exploits. 
 	 *  
-	 *  At the end of this method you should always call the {@code extractPolicy()} method to extract the policy from the learned q-values. This is currently
-	 *  done for you on the last line of the method.
+	 *  The agent's policy is a {@link GreedyPolicy} view of the q-values, which follows every update, so there is no need to extract 
+	 *  the policy during or after training. Call {@link #extractPolicy()} for a snapshot.
 	 */
 	 
 	
 	public void train()
 	{
+		long start = System.nanoTime();
 		for (int episode = 0; episode < numEpisodes; episode++) {
 	        
 	        env.reset();
+	        double episodeReturn = 0.0;
+	        double qDelta = 0.0;
 	        
 	        while (!env.isTerminal()) {
 	            
 	            Game currentState = env.getCurrentGameState();
 	            
-	            Move selectedMove = epsilonGreedyPolicy(currentState);
+	            Move selectedMove = epsilonGreedyPolicy(currentState, random);
 
 	            try {
 	               
 	                Outcome outcome = env.executeMove(selectedMove);
-	                updateQValue(currentState, selectedMove, outcome);
+	                qDelta += Math.abs(updateQValue(currentState, selectedMove, outcome));
+	                episodeReturn += outcome.localReward;
 	            
 	            } 
 	            
@@ -138,101 +188,327 @@ public class QLearningAgent extends Agent {
 	            }
 	        }
 	        
-	       
-	        this.policy=extractPolicy();
-			
-	        if (this.policy==null)
-			{
-				System.out.println("Unimplemented methods! First implement the train() & extractPolicy methods");
-				//System.exit(1);
-			}
-
+	        if (listener != null) {
+	            listener.record(TrainingListener.EPISODE_RETURN, episode, episodeReturn);
+	            listener.record(TrainingListener.Q_DELTA, episode, qDelta);
+	        }
 	    }
+		recordRun(start, numEpisodes);
 
 	    
 	}
 	
 	
-	private Move epsilonGreedyPolicy(Game currentState) {
-	    List<Move> possibleMoves = currentState.getPossibleMoves();
-
+	/**
+	 * Hogwild-style parallel training: plays {@code this.numEpisodes} episodes split across {@code threads} actor threads.
+	 * Each actor has its own {@link TTTEnvironment} (against the same opponent as {@link #env}, whose policy must therefore be 
+	 * thread safe) and its own random number generator, and all actors update the shared q-values without locks through 
+	 * {@link ArrayQTable#blendQValue}. Sets {@link #episodesPerSecond} and {@link #learningCurves}. Only the run's time and 
+	 * throughput are sent to the {@link #listener}, since the actors don't call it.
+	 * @param threads the number of actor threads
+	 */
+	public void trainParallel(int threads) throws InterruptedException
+	{
+		if (threads < 1)
+			throw new IllegalArgumentException("The number of threads should be at least 1");
+		
+		Thread[] actors = new Thread[threads];
+		learningCurves = new double[threads][];
+		long start = System.nanoTime();
+		for (int t = 0; t < threads; t++) {
+			// spread the remainder over the first actors
+			int episodes = numEpisodes / threads + ((t < numEpisodes % threads) ? 1 : 0);
+			double[] curve = new double[(episodes + curveInterval - 1) / curveInterval];
+			TTTEnvironment actorEnv = new TTTEnvironment(env.game.o, env.winReward, env.loseReward, env.livingReward, env.drawReward);
+			Random actorRandom = new Random(random.nextLong());
+			learningCurves[t] = curve;
+			actors[t] = new Thread(() -> runActor(actorEnv, actorRandom, episodes, curve), "q-learning-actor-" + t);
+			actors[t].start();
+		}
+		for (Thread actor : actors)
+			actor.join();
+		
+		episodesPerSecond = numEpisodes / ((System.nanoTime() - start) / 1e9);
+		recordRun(start, numEpisodes);
+	}
+	
+	/**
+	 * The loop of one actor thread of {@link #trainParallel}
+	 */
+	private void runActor(TTTEnvironment actorEnv, Random actorRandom, int episodes, double[] curve) {
+		for (int episode = 0; episode < episodes; episode++) {
+			actorEnv.reset();
+			double episodeReturn = 0.0;
+			
+			while (!actorEnv.isTerminal()) {
+				Game currentState = actorEnv.getCurrentGameState();
+				Move selectedMove = epsilonGreedyPolicy(currentState, actorRandom);
+				
+				try {
+					Outcome outcome = actorEnv.executeMove(selectedMove);
+					int stateId = qValues.getIndex().getId(outcome.s);
+					int cell = qValues.tableCell(outcome.s, 3 * selectedMove.x + selectedMove.y);
+					double target = outcome.localReward + discount * calculateMaxQValue(outcome.sPrime);
+					qValues.blendQValue(stateId, cell, alpha, target);
+					episodeReturn += outcome.localReward;
+				} catch (IllegalMoveException e) {
+					e.printStackTrace();
+				}
+			}
+			
+			int point = episode / curveInterval;
+			int pointSize = Math.min(curveInterval, episodes - point * curveInterval);
+			curve[point] += episodeReturn / pointSize;
+		}
+	}
+	
+	/**
+	 * Trains on a {@link BatchTTTEnvironment} of {@code batchSize} games against a random opponent, stepped in lockstep, 
+	 * until at least {@code this.numEpisodes} episodes have ended. Each step picks an epsilon greedy move in every game of 
+	 * the batch, steps the whole batch, then applies the q-learning update of every game, working on bitboards and state 
+	 * ids throughout so that nothing is allocated per step. Only the run's time and throughput are sent to the 
+	 * {@link #listener}.
+	 * @param batchSize the number of games in the batch
+	 */
+	public void trainBatched(int batchSize) throws IllegalMoveException
+	{
+		BatchTTTEnvironment batch = new BatchTTTEnvironment(batchSize, random.nextLong(), env.winReward, env.loseReward, env.livingReward, env.drawReward);
+		StateIndex index = qValues.getIndex();
+		int[] cells = new int[batchSize];
+		int[] stateIds = new int[batchSize];
+		int[] tableCells = new int[batchSize];
+		
+		long start = System.nanoTime();
+		int episodes = 0;
+		while (episodes < numEpisodes) {
+			for (int i = 0; i < batchSize; i++) {
+				int x = batch.xBits[i];
+				int o = batch.oBits[i];
+				int t = symmetric ? Game.canonicalTransform(x, o, Game.X_SIDE) : Symmetry.IDENTITY;
+				int cx = Symmetry.transformBits(t, x);
+				int co = Symmetry.transformBits(t, o);
+				int legal = ~(cx | co) & Game.FULL;
+				
+				stateIds[i] = index.getId(Game.hashOf(cx, co, Game.X_SIDE));
+				if (random.nextDouble() < epsilon)
+					tableCells[i] = BatchTTTEnvironment.nthCell(legal, random.nextInt(Integer.bitCount(legal)));
+				else
+					tableCells[i] = qValues.argmaxQ(stateIds[i], legal);
+				cells[i] = Symmetry.inverseCell(t, tableCells[i]);
+			}
+			
+			batch.step(cells);
+			
+			for (int i = 0; i < batchSize; i++) {
+				double target = batch.rewards[i];
+				if (batch.done[i])
+					episodes++;
+				else {
+					int x = batch.xBits[i];
+					int o = batch.oBits[i];
+					int t = symmetric ? Game.canonicalTransform(x, o, Game.X_SIDE) : Symmetry.IDENTITY;
+					int cx = Symmetry.transformBits(t, x);
+					int co = Symmetry.transformBits(t, o);
+					int next = index.getId(Game.hashOf(cx, co, Game.X_SIDE));
+					target += discount * qValues.maxQ(next, ~(cx | co) & Game.FULL);
+				}
+				
+				double q = qValues.getQValue(stateIds[i], tableCells[i]);
+				qValues.setQValue(stateIds[i], tableCells[i], (1 - alpha) * q + alpha * target);
+			}
+		}
+		recordRun(start, episodes);
+	}
+	
+	/**
+	 * Plays {@code this.numEpisodes} episodes like {@link #train}, but stores every transition in the replay buffer 
+	 * ({@link #replay}, created with {@code capacity} transitions if there is none) and, after each move, updates the 
+	 * q-values from a minibatch of {@code batchSize} transitions sampled from the buffer instead of the latest transition 
+	 * only.
+	 * @param capacity the capacity of the replay buffer, if it has to be created
+	 * @param batchSize the number of transitions replayed after each move
+	 * @param prioritized whether to sample by priority (see {@link ReplayBuffer#samplePrioritized}) or uniformly
+	 */
+	public void trainWithReplay(int capacity, int batchSize, boolean prioritized)
+	{
+		if (replay == null)
+			replay = new ReplayBuffer(capacity);
+		
+		int[] slots = new int[batchSize];
+		long start = System.nanoTime();
+		for (int episode = 0; episode < numEpisodes; episode++) {
+			env.reset();
+			double episodeReturn = 0.0;
+			double qDelta = 0.0;
+			
+			while (!env.isTerminal()) {
+				Game currentState = env.getCurrentGameState();
+				Move selectedMove = epsilonGreedyPolicy(currentState, random);
+				
+				try {
+					Outcome outcome = env.executeMove(selectedMove);
+					remember(outcome);
+					qDelta += replay(slots, prioritized);
+					episodeReturn += outcome.localReward;
+				} catch (IllegalMoveException e) {
+					e.printStackTrace();
+				}
+			}
+			
+			if (listener != null) {
+				listener.record(TrainingListener.EPISODE_RETURN, episode, episodeReturn);
+				listener.record(TrainingListener.Q_DELTA, episode, qDelta);
+			}
+		}
+		recordRun(start, numEpisodes);
+	}
+	
+	/**
+	 * Stores {@code outcome} in the replay buffer, which must exist. This can also be used to feed the buffer with 
+	 * transitions recorded elsewhere, e.g. from games against a {@link HumanAgent}.
+	 * @param outcome a transition of a {@link TTTEnvironment}, with X to move in the source state
+	 */
+	public void remember(Outcome outcome)
+	{
+		StateIndex index = qValues.getIndex();
+		int stateId = index.getId(outcome.s);
+		int cell = qValues.tableCell(outcome.s, 3 * outcome.move.x + outcome.move.y);
+		int nextLegal = ArrayQTable.legalCells(outcome.sPrime);
+		if (symmetric)
+			nextLegal = Symmetry.transformBits(outcome.sPrime.canonicalTransform(), nextLegal);
+		
+		replay.add(stateId, cell, outcome.localReward, index.getId(outcome.sPrime), nextLegal, outcome.sPrime.isTerminal());
+	}
+	
+	/**
+	 * Samples {@code slots.length} transitions from the replay buffer and applies the q-learning update to each. With
+	 * prioritized sampling, the priority of each replayed transition is then set from its TD error.
+	 * @param slots where to put the sampled slots
+	 * @param prioritized
+	 * @return the sum of the absolute changes of the q-values updated
+	 */
+	private double replay(int[] slots, boolean prioritized)
+	{
+		double qDelta = 0.0;
+		if (prioritized)
+			replay.samplePrioritized(random, slots);
+		else
+			replay.sampleUniform(random, slots);
+		
+		for (int slot : slots) {
+			int stateId = replay.getStateId(slot);
+			int cell = replay.getCell(slot);
+			double target = replay.getReward(slot);
+			if (!replay.isDone(slot))
+				target += discount * qValues.maxQ(replay.getNextStateId(slot), replay.getNextLegal(slot));
+			
+			double q = qValues.getQValue(stateId, cell);
+			qValues.setQValue(stateId, cell, (1 - alpha) * q + alpha * target);
+			qDelta += alpha * Math.abs(target - q);
+			if (prioritized)
+				replay.updatePriority(slot, target - q);
+		}
+		
+		return qDelta;
+	}
+	
+	/**
+	 * Records the wall-clock time and the episodes per second of a training run to the {@link #listener}, if any.
+	 * @param start the {@link System#nanoTime()} at the start of the run
+	 * @param episodes the number of episodes played
+	 */
+	private void recordRun(long start, long episodes) {
+		if (listener == null)
+			return;
+		
+		double seconds = (System.nanoTime() - start) / 1e9;
+		listener.record(TrainingListener.TIME_TRAIN, 0, seconds * 1000);
+		listener.record(TrainingListener.EPISODES_PER_SECOND, episodes, episodes / seconds);
+	}
+	
+	/**
+	 * 
+	 * @return the episodes played per second by the last call to {@link #trainParallel}
+	 */
+	public double getEpisodesPerSecond() {
+		return episodesPerSecond;
+	}
+	
+	/**
+	 * 
+	 * @return the learning curve of each actor thread in the last call to {@link #trainParallel}, see {@link #learningCurves}
+	 */
+	public double[][] getLearningCurves() {
+		return learningCurves;
+	}
+	
+	private Move epsilonGreedyPolicy(Game currentState, Random rng) {
 	    // Explore with probability epsilon
-	    if (Math.random() < epsilon) {
-	        return possibleMoves.get((int) (Math.random() * possibleMoves.size()));
+	    if (rng.nextDouble() < epsilon) {
+	        int empty = currentState.legalMoveMask();
+	        for (int i = rng.nextInt(Integer.bitCount(empty)); i > 0; i--)
+	            empty &= empty - 1;
+	        return currentState.moveOf(Integer.numberOfTrailingZeros(empty));
 	    } else {
 	        // Exploit by selecting the move with the highest Q-value
-	        Move bestMove = null;
-	        double bestQValue = Double.NEGATIVE_INFINITY;
-
-	        for (Move move : possibleMoves) {
-	            double qValue = qTable.getQValue(currentState, move);
-	            if (qValue > bestQValue) {
-	                bestQValue = qValue;
-	                bestMove = move;
-	            }
-	        }
+	        int bestCell = qValues.argmaxQ(currentState);
+	        if (bestCell < 0)
+	            return null;
 
-	        return bestMove;
+	        return currentState.moveOf(bestCell);
 	    }
 	}
 	
 	public double calculateMaxQValue(Game gameState) {
 	   
-		List<Move> moves = gameState.getPossibleMoves();
-	    double maxQValue = Double.NEGATIVE_INFINITY;
+		// no more rewards to come once the game is over
+		if (gameState.isTerminal())
+			return 0.0;
 
-	    for (Move move : moves) {
-	        double qValue = qTable.getQValue(gameState, move);
-	        if (qValue > maxQValue) {
-	            maxQValue = qValue;
-	        }
-	    }
-
-	    return maxQValue;
+		return qValues.maxQ(gameState);
 	}
 	
 
-	private void updateQValue(Game currentState, Move selectedMove, Outcome outcome) {
+	/**
+	 * Applies the q-learning update for {@code outcome}
+	 * @return the change of the q-value updated
+	 */
+	private double updateQValue(Game currentState, Move selectedMove, Outcome outcome) {
 	    double maxNextQValue = calculateMaxQValue(outcome.sPrime);
 
-	    Double currentQValueObj = qTable.getQValue(currentState, selectedMove);
+	    // currentState is the environment's game, which executeMove has already advanced: the source state is outcome.s
+	    int stateId = qValues.getIndex().getId(outcome.s);
+	    int cell = qValues.tableCell(outcome.s, 3 * selectedMove.x + selectedMove.y);
 
-	    double currentQValue = currentQValueObj != null ? currentQValueObj : 0.0;
+	    double currentQValue = qValues.getQValue(stateId, cell);
 
 	    double newQValue = (1 - alpha) * currentQValue + alpha * (outcome.localReward + discount * maxNextQValue);
 
-	    qTable.addQValue(currentState, selectedMove, newQValue);
+	    qValues.setQValue(stateId, cell, newQValue);
+	    return newQValue - currentQValue;
 	}
 
 	
 	/** Implement this method. It should use the q-values in the {@code qTable} to extract a policy and return it.
+	 * The agent itself plays the live {@link GreedyPolicy}; this is a snapshot of it, read from the greedy cells.
 	 *
 	 * @return the policy currently inherent in the QTable
 	 */
 	public Policy extractPolicy() {
 	    Policy policy = new Policy();
+	    StateIndex index = qValues.getIndex();
 
-	    for (Game state : qTable.keySet()) {
-	        List<Move> possibleMoves = state.getPossibleMoves();
-	        
-	        if (!possibleMoves.isEmpty()) {
-	          
-	            Move bestMove = null;
-	            double maxQValue = Double.NEGATIVE_INFINITY;
-
-	            for (Move action : possibleMoves) {
-	                double qValue = qTable.getQValue(state, action);
+	    for (int id = 0; id < index.size(); id++) {
+	        Game state = index.getGame(id);
+	        int bestCell = qValues.getGreedyCell(id);
 
-	                if (qValue > maxQValue) {
-	                    maxQValue = qValue;
-	                    bestMove = action;
-	                }
-	            }
-
-	            policy.policy.put(state, bestMove);
-	        }
+	        if (bestCell >= 0)
+	            policy.policy.put(state, state.moveOf(bestCell));
 	    }
 
+	    if (symmetric)
+	        return new CanonicalPolicy(policy.policy);
+
 	    return policy;
 	}
 
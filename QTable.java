@@ -1,21 +1,401 @@
 package ticTacToe;
 
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 /**
  * This class a simple implementation of a Q-Table. It's a subclass of {@link java.util.HashMap}, so all the methods from 
  * that class are available. Two methods for adding and retrieving q-values to/from the table are provided.
  * 
+ * A QTable can also be used as an adapter over an {@link ArrayQTable}: in that case q-values for the states in the
+ * array's {@link StateIndex} are read from and written to the array, and only other states are stored in the map. Each
+ * state of the index is a key of the map, whose value is a view of its row of the array: its keys are the legal moves
+ * of the state, and reading or putting a q-value reads or writes the array. So {@link #keySet()}, {@link #size()},
+ * {@link #get(Object)} and the other map methods see the states and q-values of the array. If the index is symmetric,
+ * the keys are the canonical games, and {@link #get(Object)} also returns a view for the other games of the index.
+ * Rows can't be removed or replaced, from the map, its views or their own views: every method of the map or of a row
+ * that would do so throws an {@link UnsupportedOperationException}, and every method of a row that changes a q-value
+ * writes it to the array.
+ * 
  * @author ae187
  *
  */
 public class QTable extends HashMap<Game, HashMap<Move,Double>> {
 
+	/**
+	 * the primitive table this one is backed by, or null.
+	 */
+	ArrayQTable values;
 	
 	public QTable()
 	{
 		super();
 	}
 	
+	/**
+	 * A q-table backed by {@code values}
+	 * @param values
+	 */
+	public QTable(ArrayQTable values)
+	{
+		super();
+		this.values=values;
+		StateIndex index=values.getIndex();
+		for(int id=0;id<index.size();id++)
+		{
+			Game g=index.getGame(id);
+			super.put(g, new Row(g));
+		}
+	}
+	
+	/**
+	 * @return the q-values of {@code key}: its view of the array if it's in the array's index, see {@link QTable}
+	 */
+	@Override
+	public HashMap<Move,Double> get(Object key)
+	{
+		HashMap<Move,Double> row=super.get(key);
+		if (row==null && backs(key))
+			return new Row((Game) key);
+		
+		return row;
+	}
+	
+	@Override
+	public boolean containsKey(Object key)
+	{
+		return super.containsKey(key) || backs(key);
+	}
+	
+	/**
+	 * @throws UnsupportedOperationException if {@code key} is in the array's index
+	 */
+	@Override
+	public HashMap<Move,Double> put(Game key, HashMap<Move,Double> value)
+	{
+		checkNotBacked(key);
+		return super.put(key, value);
+	}
+	
+	/**
+	 * @throws UnsupportedOperationException if {@code key} is in the array's index
+	 */
+	@Override
+	public HashMap<Move,Double> remove(Object key)
+	{
+		checkNotBacked(key);
+		return super.remove(key);
+	}
+	
+	/**
+	 * @throws UnsupportedOperationException if this table is backed by an array
+	 */
+	@Override
+	public void clear()
+	{
+		if (values!=null)
+			throw new UnsupportedOperationException("Can't remove the states of the array");
+		
+		super.clear();
+	}
+	
+	@Override
+	public void putAll(Map<? extends Game, ? extends HashMap<Move,Double>> m)
+	{
+		for(Map.Entry<? extends Game, ? extends HashMap<Move,Double>> e: m.entrySet())
+			put(e.getKey(), e.getValue());
+	}
+	
+	/**
+	 * @return the row of {@code key} if it is in the array's index, which is always present
+	 */
+	@Override
+	public HashMap<Move,Double> putIfAbsent(Game key, HashMap<Move,Double> value)
+	{
+		if (backs(key))
+			return get(key);
+		
+		return super.putIfAbsent(key, value);
+	}
+	
+	/**
+	 * @return the row of {@code key} if it is in the array's index, which is always present
+	 */
+	@Override
+	public HashMap<Move,Double> computeIfAbsent(Game key, Function<? super Game, ? extends HashMap<Move,Double>> mappingFunction)
+	{
+		if (backs(key))
+			return get(key);
+		
+		return super.computeIfAbsent(key, mappingFunction);
+	}
+	
+	/**
+	 * @throws UnsupportedOperationException if {@code key} is in the array's index
+	 */
+	@Override
+	public HashMap<Move,Double> computeIfPresent(Game key, BiFunction<? super Game, ? super HashMap<Move,Double>, ? extends HashMap<Move,Double>> remappingFunction)
+	{
+		checkNotBacked(key);
+		return super.computeIfPresent(key, remappingFunction);
+	}
+	
+	/**
+	 * @throws UnsupportedOperationException if {@code key} is in the array's index
+	 */
+	@Override
+	public HashMap<Move,Double> compute(Game key, BiFunction<? super Game, ? super HashMap<Move,Double>, ? extends HashMap<Move,Double>> remappingFunction)
+	{
+		checkNotBacked(key);
+		return super.compute(key, remappingFunction);
+	}
+	
+	/**
+	 * @throws UnsupportedOperationException if {@code key} is in the array's index
+	 */
+	@Override
+	public HashMap<Move,Double> merge(Game key, HashMap<Move,Double> value, BiFunction<? super HashMap<Move,Double>, ? super HashMap<Move,Double>, ? extends HashMap<Move,Double>> remappingFunction)
+	{
+		checkNotBacked(key);
+		return super.merge(key, value, remappingFunction);
+	}
+	
+	/**
+	 * @throws UnsupportedOperationException if {@code key} is in the array's index
+	 */
+	@Override
+	public HashMap<Move,Double> replace(Game key, HashMap<Move,Double> value)
+	{
+		checkNotBacked(key);
+		return super.replace(key, value);
+	}
+	
+	/**
+	 * @throws UnsupportedOperationException if {@code key} is in the array's index
+	 */
+	@Override
+	public boolean replace(Game key, HashMap<Move,Double> oldValue, HashMap<Move,Double> newValue)
+	{
+		checkNotBacked(key);
+		return super.replace(key, oldValue, newValue);
+	}
+	
+	/**
+	 * @throws UnsupportedOperationException if {@code key} is in the array's index
+	 */
+	@Override
+	public boolean remove(Object key, Object value)
+	{
+		checkNotBacked(key);
+		return super.remove(key, value);
+	}
+	
+	/**
+	 * @throws UnsupportedOperationException if this table is backed by an array
+	 */
+	@Override
+	public void replaceAll(BiFunction<? super Game, ? super HashMap<Move,Double>, ? extends HashMap<Move,Double>> function)
+	{
+		if (values!=null)
+			throw new UnsupportedOperationException("Can't replace the states of the array");
+		
+		super.replaceAll(function);
+	}
+	
+	/**
+	 * The keys, as {@link HashMap#keySet()}, except that removing a state of the array throws an
+	 * {@link UnsupportedOperationException}
+	 */
+	@Override
+	public Set<Game> keySet()
+	{
+		if (values==null)
+			return super.keySet();
+		
+		return new AbstractSet<Game>() {
+			
+			@Override
+			public Iterator<Game> iterator()
+			{
+				Iterator<Map.Entry<Game, HashMap<Move,Double>>> entries=entrySet().iterator();
+				return new Iterator<Game>() {
+					
+					@Override
+					public boolean hasNext()
+					{
+						return entries.hasNext();
+					}
+					
+					@Override
+					public Game next()
+					{
+						return entries.next().getKey();
+					}
+					
+					@Override
+					public void remove()
+					{
+						entries.remove();
+					}
+				};
+			}
+			
+			@Override
+			public boolean contains(Object o)
+			{
+				return QTable.super.containsKey(o);
+			}
+			
+			@Override
+			public int size()
+			{
+				return QTable.this.size();
+			}
+		};
+	}
+	
+	/**
+	 * The values, as {@link HashMap#values()}, except that removing the row of a state of the array throws an
+	 * {@link UnsupportedOperationException}
+	 */
+	@Override
+	public Collection<HashMap<Move,Double>> values()
+	{
+		if (values==null)
+			return super.values();
+		
+		return new AbstractCollection<HashMap<Move,Double>>() {
+			
+			@Override
+			public Iterator<HashMap<Move,Double>> iterator()
+			{
+				Iterator<Map.Entry<Game, HashMap<Move,Double>>> entries=entrySet().iterator();
+				return new Iterator<HashMap<Move,Double>>() {
+					
+					@Override
+					public boolean hasNext()
+					{
+						return entries.hasNext();
+					}
+					
+					@Override
+					public HashMap<Move,Double> next()
+					{
+						return entries.next().getValue();
+					}
+					
+					@Override
+					public void remove()
+					{
+						entries.remove();
+					}
+				};
+			}
+			
+			@Override
+			public int size()
+			{
+				return QTable.this.size();
+			}
+		};
+	}
+	
+	/**
+	 * The entries, as {@link HashMap#entrySet()}, except that removing a state of the array, or setting its row, throws
+	 * an {@link UnsupportedOperationException}
+	 */
+	@Override
+	public Set<Map.Entry<Game, HashMap<Move,Double>>> entrySet()
+	{
+		Set<Map.Entry<Game, HashMap<Move,Double>>> entries=super.entrySet();
+		if (values==null)
+			return entries;
+		
+		return new AbstractSet<Map.Entry<Game, HashMap<Move,Double>>>() {
+			
+			@Override
+			public Iterator<Map.Entry<Game, HashMap<Move,Double>>> iterator()
+			{
+				Iterator<Map.Entry<Game, HashMap<Move,Double>>> iter=entries.iterator();
+				return new Iterator<Map.Entry<Game, HashMap<Move,Double>>>() {
+					
+					Map.Entry<Game, HashMap<Move,Double>> last;
+					
+					@Override
+					public boolean hasNext()
+					{
+						return iter.hasNext();
+					}
+					
+					@Override
+					public Map.Entry<Game, HashMap<Move,Double>> next()
+					{
+						Map.Entry<Game, HashMap<Move,Double>> e=iter.next();
+						last=e;
+						return new AbstractMap.SimpleEntry<Game, HashMap<Move,Double>>(e) {
+							
+							private static final long serialVersionUID = 1L;
+							
+							@Override
+							public HashMap<Move,Double> setValue(HashMap<Move,Double> value)
+							{
+								checkNotBacked(e.getKey());
+								super.setValue(value);
+								return e.setValue(value);
+							}
+						};
+					}
+					
+					@Override
+					public void remove()
+					{
+						if (last!=null)
+							checkNotBacked(last.getKey());
+						iter.remove();
+					}
+				};
+			}
+			
+			@Override
+			public boolean contains(Object o)
+			{
+				return entries.contains(o);
+			}
+			
+			@Override
+			public int size()
+			{
+				return entries.size();
+			}
+		};
+	}
+	
+	/**
+	 * @throws UnsupportedOperationException if {@code key} is in the array's index
+	 */
+	private void checkNotBacked(Object key)
+	{
+		if (backs(key))
+			throw new UnsupportedOperationException("The q-values of "+key+" are in the array: use addQValue");
+	}
+	
+	/**
+	 * @return whether the q-values of {@code key} are in the array
+	 */
+	private boolean backs(Object key)
+	{
+		return values!=null && key instanceof Game && values.getIndex().contains((Game) key);
+	}
+	
 	/**
 	 * 
 	 */
@@ -30,6 +410,9 @@ public class QTable extends HashMap<Game, HashMap<Move,Double>> {
 	 */
 	public Double getQValue(Game g, Move m)
 	{
+		if (values!=null && values.getIndex().contains(g))
+			return values.getQValue(g, m);
+		
 		if (containsKey(g))
 		{
 			HashMap<Move,Double> moves=get(g);
@@ -48,12 +431,335 @@ public class QTable extends HashMap<Game, HashMap<Move,Double>> {
 	 */
 	public void addQValue(Game g, Move m, Double v)
 	{
+		if (values!=null && values.getIndex().contains(g))
+		{
+			values.addQValue(g, m, v);
+			return;
+		}
+		
 		if (!containsKey(g))
 			this.put(g, new HashMap<Move,Double>());
 		
 		this.get(g).put(m, v);
 	}
 	
+	/**
+	 * The q-values of one game of the array, as a map from its legal moves: reads and writes go to the array. The
+	 * {@link HashMap} this extends is never used.
+	 */
+	private class Row extends HashMap<Move,Double> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		final Game game;
+		
+		/**
+		 * the legal cells of {@link #game}, see {@link ArrayQTable#legalCells(Game)}
+		 */
+		final int legal;
+		
+		Row(Game game)
+		{
+			this.game=game;
+			this.legal=ArrayQTable.legalCells(game);
+		}
+		
+		/**
+		 * @return whether {@code key} is a legal move of the game
+		 */
+		private boolean isLegal(Object key)
+		{
+			if (!(key instanceof Move))
+				return false;
+			
+			Move m=(Move) key;
+			return m.who.getName()==game.whoseTurn.getName() && m.x<3 && m.y<3 && (legal&(1<<(3*m.x+m.y)))!=0;
+		}
+		
+		@Override
+		public Double get(Object key)
+		{
+			return isLegal(key)?values.getQValue(game, (Move) key):null;
+		}
+		
+		@Override
+		public Double getOrDefault(Object key, Double defaultValue)
+		{
+			return isLegal(key)?values.getQValue(game, (Move) key):defaultValue;
+		}
+		
+		@Override
+		public boolean containsKey(Object key)
+		{
+			return isLegal(key);
+		}
+		
+		/**
+		 * @throws IllegalArgumentException if {@code key} isn't a legal move of the game
+		 */
+		@Override
+		public Double put(Move key, Double value)
+		{
+			if (!isLegal(key))
+				throw new IllegalArgumentException("Not a legal move in the q-table:"+key);
+			
+			Double old=values.getQValue(game, key);
+			values.addQValue(game, key, value);
+			return old;
+		}
+		
+		@Override
+		public void putAll(Map<? extends Move, ? extends Double> m)
+		{
+			for(Map.Entry<? extends Move, ? extends Double> e: m.entrySet())
+				put(e.getKey(), e.getValue());
+		}
+		
+		/**
+		 * @return the q-value of {@code key}, which is always present if it's a legal move
+		 * @throws IllegalArgumentException if {@code key} isn't a legal move of the game
+		 */
+		@Override
+		public Double putIfAbsent(Move key, Double value)
+		{
+			return isLegal(key)?get(key):put(key, value);
+		}
+		
+		@Override
+		public Double replace(Move key, Double value)
+		{
+			return isLegal(key)?put(key, value):null;
+		}
+		
+		@Override
+		public boolean replace(Move key, Double oldValue, Double newValue)
+		{
+			if (!isLegal(key) || !Objects.equals(get(key), oldValue))
+				return false;
+			
+			put(key, newValue);
+			return true;
+		}
+		
+		@Override
+		public void replaceAll(BiFunction<? super Move, ? super Double, ? extends Double> function)
+		{
+			for(Move m: keySet())
+				put(m, function.apply(m, get(m)));
+		}
+		
+		/**
+		 * @throws IllegalArgumentException if {@code key} isn't a legal move of the game
+		 */
+		@Override
+		public Double computeIfAbsent(Move key, Function<? super Move, ? extends Double> mappingFunction)
+		{
+			return isLegal(key)?get(key):put(key, mappingFunction.apply(key));
+		}
+		
+		/**
+		 * @throws UnsupportedOperationException if the function returns null, which would remove the move
+		 */
+		@Override
+		public Double computeIfPresent(Move key, BiFunction<? super Move, ? super Double, ? extends Double> remappingFunction)
+		{
+			if (!isLegal(key))
+				return null;
+			
+			return update(key, remappingFunction.apply(key, get(key)));
+		}
+		
+		/**
+		 * @throws IllegalArgumentException if {@code key} isn't a legal move of the game
+		 * @throws UnsupportedOperationException if the function returns null, which would remove the move
+		 */
+		@Override
+		public Double compute(Move key, BiFunction<? super Move, ? super Double, ? extends Double> remappingFunction)
+		{
+			return update(key, remappingFunction.apply(key, get(key)));
+		}
+		
+		/**
+		 * @throws IllegalArgumentException if {@code key} isn't a legal move of the game
+		 * @throws UnsupportedOperationException if the function returns null, which would remove the move
+		 */
+		@Override
+		public Double merge(Move key, Double value, BiFunction<? super Double, ? super Double, ? extends Double> remappingFunction)
+		{
+			if (!isLegal(key))
+				throw new IllegalArgumentException("Not a legal move in the q-table:"+key);
+			
+			return update(key, remappingFunction.apply(get(key), value));
+		}
+		
+		/**
+		 * Writes {@code value} to the array
+		 * @return {@code value}
+		 */
+		private Double update(Move key, Double value)
+		{
+			if (value==null)
+				throw new UnsupportedOperationException("Can't remove a move of the array");
+			
+			put(key, value);
+			return value;
+		}
+		
+		@Override
+		public Double remove(Object key)
+		{
+			throw new UnsupportedOperationException("Can't remove a move of the array");
+		}
+		
+		@Override
+		public boolean remove(Object key, Object value)
+		{
+			throw new UnsupportedOperationException("Can't remove a move of the array");
+		}
+		
+		/**
+		 * @return a copy of the q-values of the game, as a plain map
+		 */
+		@Override
+		public Object clone()
+		{
+			return new HashMap<Move,Double>(this);
+		}
+		
+		@Override
+		public void clear()
+		{
+			throw new UnsupportedOperationException("Can't remove the moves of the array");
+		}
+		
+		@Override
+		public int size()
+		{
+			return Integer.bitCount(legal);
+		}
+		
+		@Override
+		public boolean isEmpty()
+		{
+			return legal==0;
+		}
+		
+		@Override
+		public void forEach(BiConsumer<? super Move, ? super Double> action)
+		{
+			for(Move m: keySet())
+				action.accept(m, values.getQValue(game, m));
+		}
+		
+		@Override
+		public Set<Map.Entry<Move,Double>> entrySet()
+		{
+			return new AbstractSet<Map.Entry<Move,Double>>() {
+				
+				@Override
+				public Iterator<Map.Entry<Move,Double>> iterator()
+				{
+					MoveIterator moves=new MoveIterator().reset(legal, game.whoseTurn.getName());
+					return new Iterator<Map.Entry<Move,Double>>() {
+						
+						@Override
+						public boolean hasNext()
+						{
+							return moves.hasNext();
+						}
+						
+						@Override
+						public Map.Entry<Move,Double> next()
+						{
+							Move m=moves.next();
+							return new AbstractMap.SimpleEntry<Move,Double>(m, values.getQValue(game, m)) {
+								
+								private static final long serialVersionUID = 1L;
+								
+								@Override
+								public Double setValue(Double value)
+								{
+									Row.this.put(m, value);
+									return super.setValue(value);
+								}
+							};
+						}
+					};
+				}
+				
+				@Override
+				public int size()
+				{
+					return Row.this.size();
+				}
+			};
+		}
+		
+		@Override
+		public Set<Move> keySet()
+		{
+			return new AbstractSet<Move>() {
+				
+				@Override
+				public Iterator<Move> iterator()
+				{
+					return new MoveIterator().reset(legal, game.whoseTurn.getName());
+				}
+				
+				@Override
+				public boolean contains(Object o)
+				{
+					return isLegal(o);
+				}
+				
+				@Override
+				public int size()
+				{
+					return Row.this.size();
+				}
+			};
+		}
+		
+		@Override
+		public Collection<Double> values()
+		{
+			return new AbstractCollection<Double>() {
+				
+				@Override
+				public Iterator<Double> iterator()
+				{
+					Iterator<Move> moves=keySet().iterator();
+					return new Iterator<Double>() {
+						
+						@Override
+						public boolean hasNext()
+						{
+							return moves.hasNext();
+						}
+						
+						@Override
+						public Double next()
+						{
+							return values.getQValue(game, moves.next());
+						}
+					};
+				}
+				
+				@Override
+				public int size()
+				{
+					return Row.this.size();
+				}
+			};
+		}
+		
+		@Override
+		public String toString()
+		{
+			return new HashMap<Move,Double>(this).toString();
+		}
+	}
+	
 	
 
 }
@@ -1,9 +1,7 @@
 package ticTacToe;
 
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * This is a Policy which picks an move randomly with equal probability from the available moves. 
@@ -12,41 +10,20 @@ import java.util.Random;
  */
 public class RandomPolicy extends Policy{
 
-	Random r = new Random();
-	
 	@Override
 	public Move getMove(Game g) {
 		
+		long empty=~(g.getXBits()|g.getOBits())&g.getShape().full;
 		
-		List<IndexPair> pairs=new ArrayList<IndexPair>();
-		
-		for(int i=0;i<3;i++)
-			for(int j=0;j<3;j++)
-			{
-				if (g.getBoard()[i][j]==' ')
-					pairs.add(new IndexPair(i,j));
-					
-			}
+		//thread-local, so that agents sharing this policy across threads don't contend on one generator
+		//clear a random number of the lowest empty cells, then play the next one
+		for(int i=ThreadLocalRandom.current().nextInt(Long.bitCount(empty));i>0;i--)
+			empty&=empty-1;
 		
-		IndexPair random=pairs.get(r.nextInt(pairs.size()));
-		
-		return new Move(g.whoseTurn, random.x, random.y);
+		return g.moveOf(Long.numberOfTrailingZeros(empty));
 	}
 	
 	
 	
 
 }
-
-
-class IndexPair{
-	
-	public int x;
-	public int y;
-	
-	IndexPair(int x, int y)
-	{
-		this.x=x;
-		this.y=y;
-	}
-}
\ No newline at end of file
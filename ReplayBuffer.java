@@ -0,0 +1,263 @@
+package ticTacToe;
+
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Random;
+
+/**
+ * A fixed-capacity experience replay buffer for {@link QLearningAgent}: a ring of transitions (s, a, r, s', done), where
+ * the oldest transition is overwritten once the buffer is full.
+ *
+ * The transitions are stored as packed primitives in off-heap memory ({@link ByteBuffer#allocateDirect}), in records of
+ * {@link #RECORD_SIZE} bytes: the state id of s and s' in an {@link ArrayQTable}, the cell played, the reward, and a flags
+ * int holding the cells that can be played in s' and whether s' is terminal. A transition is referred to by its slot,
+ * between 0 and {@link #size()}-1, so storing and sampling millions of transitions doesn't allocate anything.
+ *
+ * Transitions can be sampled uniformly ({@link #sampleUniform}) or proportionally to their priority
+ * ({@link #samplePrioritized}), see {@link #updatePriority}. The priorities are kept in a sum tree, also off-heap, so both
+ * sampling and updating a priority take O(log capacity).
+ *
+ */
+public class ReplayBuffer {
+
+	/**
+	 * The size of a transition record in bytes: s (int), cell (int), reward (double), s' (int), flags (int)
+	 */
+	static final int RECORD_SIZE=24;
+
+	private static final int STATE=0;
+	private static final int CELL=4;
+	private static final int REWARD=8;
+	private static final int NEXT_STATE=16;
+	private static final int FLAGS=20;
+
+	/**
+	 * the bit of the flags int set when s' is terminal. The lower 9 bits are the legal cells of s'.
+	 */
+	private static final int DONE=1<<9;
+
+	/**
+	 * the maximum number of transitions
+	 */
+	final int capacity;
+
+	/**
+	 * the transition records
+	 */
+	final ByteBuffer records;
+
+	/**
+	 * The sum tree of the priorities: node i has children 2i and 2i+1, the leaves are at {@code capacity+slot}, and each
+	 * inner node holds the sum of its children. Node 0 is unused.
+	 */
+	final DoubleBuffer priorities;
+
+	/**
+	 * the number of transitions stored
+	 */
+	int size;
+
+	/**
+	 * the slot the next transition is written to
+	 */
+	int next;
+
+	/**
+	 * The exponent applied to the absolute TD error to get a priority: 0 is uniform sampling, 1 fully prioritized.
+	 */
+	double priorityExponent=0.6;
+
+	/**
+	 * added to the absolute TD error so that no transition has a zero priority
+	 */
+	double minError=0.01;
+
+	/**
+	 * the highest priority given so far, which new transitions get so that they are sampled at least once
+	 */
+	double maxPriority=1.0;
+
+	/**
+	 *
+	 * @param capacity the maximum number of transitions
+	 */
+	public ReplayBuffer(int capacity)
+	{
+		if (capacity<1)
+			throw new IllegalArgumentException("The capacity should be at least 1");
+
+		this.capacity=capacity;
+		this.records=ByteBuffer.allocateDirect(capacity*RECORD_SIZE).order(ByteOrder.nativeOrder());
+		this.priorities=ByteBuffer.allocateDirect(2*capacity*Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+	}
+
+	/**
+	 * Stores a transition, overwriting the oldest one if the buffer is full. It gets the highest priority so far.
+	 * @param stateId the id of s
+	 * @param cell the cell played in s, {@code 3*x+y}
+	 * @param reward the reward received
+	 * @param nextStateId the id of s'
+	 * @param nextLegal the bitboard of the cells that can be played in s', 0 if it is terminal
+	 * @param done whether s' is terminal
+	 * @return the slot of the transition
+	 */
+	public int add(int stateId, int cell, double reward, int nextStateId, int nextLegal, boolean done)
+	{
+		int slot=next;
+		int base=slot*RECORD_SIZE;
+		records.putInt(base+STATE, stateId);
+		records.putInt(base+CELL, cell);
+		records.putDouble(base+REWARD, reward);
+		records.putInt(base+NEXT_STATE, nextStateId);
+		records.putInt(base+FLAGS, (nextLegal&Game.FULL)|(done?DONE:0));
+		setPriority(slot, maxPriority);
+
+		next=(next+1)%capacity;
+		if (size<capacity)
+			size++;
+
+		return slot;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public int capacity()
+	{
+		return capacity;
+	}
+
+	public int getStateId(int slot)
+	{
+		return records.getInt(slot*RECORD_SIZE+STATE);
+	}
+
+	public int getCell(int slot)
+	{
+		return records.getInt(slot*RECORD_SIZE+CELL);
+	}
+
+	public double getReward(int slot)
+	{
+		return records.getDouble(slot*RECORD_SIZE+REWARD);
+	}
+
+	public int getNextStateId(int slot)
+	{
+		return records.getInt(slot*RECORD_SIZE+NEXT_STATE);
+	}
+
+	/**
+	 *
+	 * @param slot
+	 * @return the bitboard of the cells that can be played in s'
+	 */
+	public int getNextLegal(int slot)
+	{
+		return records.getInt(slot*RECORD_SIZE+FLAGS)&Game.FULL;
+	}
+
+	public boolean isDone(int slot)
+	{
+		return (records.getInt(slot*RECORD_SIZE+FLAGS)&DONE)!=0;
+	}
+
+	/**
+	 * Fills {@code slots} with slots drawn uniformly at random, with replacement.
+	 * @param rng
+	 * @param slots
+	 * @throws IllegalStateException if the buffer is empty
+	 */
+	public void sampleUniform(Random rng, int[] slots)
+	{
+		if (size==0)
+			throw new IllegalStateException("The replay buffer is empty");
+
+		for(int i=0;i<slots.length;i++)
+			slots[i]=rng.nextInt(size);
+	}
+
+	/**
+	 * Fills {@code slots} with slots drawn with probability proportional to their priority. The total priority is split
+	 * into {@code slots.length} equal segments and one slot is drawn in each (stratified sampling), which spreads the
+	 * minibatch over the buffer.
+	 * @param rng
+	 * @param slots
+	 * @throws IllegalStateException if the buffer is empty
+	 */
+	public void samplePrioritized(Random rng, int[] slots)
+	{
+		if (size==0)
+			throw new IllegalStateException("The replay buffer is empty");
+
+		double segment=priorities.get(1)/slots.length;
+		for(int i=0;i<slots.length;i++)
+			slots[i]=find((i+rng.nextDouble())*segment);
+	}
+
+	/**
+	 * Sets the priority of the transition in {@code slot} from its latest TD error:
+	 * {@code (|tdError|+minError)^priorityExponent}.
+	 * @param slot
+	 * @param tdError
+	 */
+	public void updatePriority(int slot, double tdError)
+	{
+		double p=Math.pow(Math.abs(tdError)+minError, priorityExponent);
+		if (p>maxPriority)
+			maxPriority=p;
+
+		setPriority(slot, p);
+	}
+
+	/**
+	 *
+	 * @param slot
+	 * @return the priority of the transition in {@code slot}
+	 */
+	public double getPriority(int slot)
+	{
+		return priorities.get(capacity+slot);
+	}
+
+	private void setPriority(int slot, double p)
+	{
+		int node=capacity+slot;
+		double delta=p-priorities.get(node);
+		for(;node>0;node>>=1)
+			priorities.put(node, priorities.get(node)+delta);
+	}
+
+	/**
+	 *
+	 * @param mass
+	 * @return the leaf where the running sum of the priorities, in the order of a descent of the tree, reaches
+	 * {@code mass}
+	 */
+	private int find(double mass)
+	{
+		//the leaves of a sum tree over a capacity that is not a power of 2 are on two levels, so descend until the node is
+		//a leaf rather than for a fixed number of levels. Each leaf is still reached with probability proportional to its
+		//priority.
+		int node=1;
+		while (node<capacity)
+		{
+			double left=priorities.get(2*node);
+			if (mass<left)
+				node=2*node;
+			else
+			{
+				mass-=left;
+				node=2*node+1;
+			}
+		}
+
+		//rounding can push the mass onto a leaf with no transition yet
+		return Math.min(node-capacity, size-1);
+	}
+
+}
@@ -0,0 +1,166 @@
+package ticTacToe;
+
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A dense index over a fixed set of game states: every state gets an integer id between 0 and {@link #size()}-1, so that
+ * values, q-values or policies can be stored in flat primitive arrays instead of maps keyed by {@link Game}.
+ *
+ * Both directions are O(1) array lookups: {@link #getId(Game)} goes through a table indexed by {@link Game#hashCode}, and
+ * {@link #getGame(int)} / {@link #getHash(int)} read the states in id order. The hashes are the ones from
+ * {@link Game#hashCode}, so an id can always be turned back into the existing hash format (e.g. when writing to file)
+ * and vice versa.
+ *
+ * A symmetric index only holds canonical games (see {@link Game#canonical()}), and maps every game to the id of its
+ * canonical representative, which cuts the number of states by up to 8.
+ *
+ */
+public class StateIndex {
+
+	/**
+	 * Returned by {@link #getId} for states that are not in the index.
+	 */
+	public static final int NO_ID=-1;
+
+	/**
+	 * the states, in id order. These are shared and should not be modified.
+	 */
+	final Game[] games;
+
+	/**
+	 * the hash of each state, in id order
+	 */
+	final int[] hashes;
+
+	/**
+	 * maps a {@link Game#hashCode} to its id, or {@link #NO_ID}
+	 */
+	final int[] ids=new int[Game.NUM_HASHES];
+
+	/**
+	 * true if states are identified up to symmetry, see {@link Symmetry}
+	 */
+	final boolean symmetric;
+
+	/**
+	 * Indexes {@code states} in the order given. Duplicate states (equal hashes) share the id of their first occurrence.
+	 * @param states
+	 */
+	public StateIndex(List<Game> states)
+	{
+		this(states, false);
+	}
+
+	/**
+	 * Indexes {@code states} in the order given. If {@code symmetric} is true, each state is replaced by its canonical
+	 * representative first, so that all symmetric states share one id.
+	 * @param states
+	 * @param symmetric
+	 */
+	public StateIndex(List<Game> states, boolean symmetric)
+	{
+		this.symmetric=symmetric;
+		Arrays.fill(ids, NO_ID);
+
+		Game[] unique=new Game[states.size()];
+		int n=0;
+		for(Game g: states)
+		{
+			if (symmetric)
+				g=g.canonical();
+
+			int h=g.hashCode();
+			if (ids[h]!=NO_ID)
+				continue;
+
+			ids[h]=n;
+			unique[n++]=g;
+		}
+
+		this.games=Arrays.copyOf(unique, n);
+		this.hashes=new int[n];
+		for(int id=0;id<n;id++)
+			hashes[id]=games[id].hashCode();
+	}
+
+	/**
+	 * Indexes all valid games where it is {@code xo}'s turn, or that are terminal, as given by
+	 * {@link Game#generateAllValidGames(char)}. These are the states the planning and learning agents (playing X) use.
+	 * @param xo
+	 * @return
+	 */
+	public static StateIndex forPlayer(char xo)
+	{
+		return new StateIndex(Game.generateAllValidGames(xo));
+	}
+
+	/**
+	 *
+	 * @return the number of states in the index
+	 */
+	public int size()
+	{
+		return games.length;
+	}
+
+	/**
+	 *
+	 * @param g
+	 * @return the id of {@code g}, or {@link #NO_ID} if it is not in the index, e.g. if it is an {@link MNKGame}
+	 * (see {@link Game#hasBase3Hash()})
+	 */
+	public int getId(Game g)
+	{
+		if (!g.hasBase3Hash())
+			return NO_ID;
+
+		return ids[symmetric?g.canonicalHash():g.hashCode()];
+	}
+
+	/**
+	 *
+	 * @param hash a hash as returned by {@link Game#hashCode}
+	 * @return the id of the state with that hash, or {@link #NO_ID} if it is not in the index. In a symmetric index
+	 * only the hashes of canonical games have an id.
+	 */
+	public int getId(int hash)
+	{
+		if (hash<0 || hash>=ids.length)
+			return NO_ID;
+
+		return ids[hash];
+	}
+
+	public boolean isSymmetric()
+	{
+		return symmetric;
+	}
+
+	public boolean contains(Game g)
+	{
+		return getId(g)!=NO_ID;
+	}
+
+	/**
+	 *
+	 * @param id
+	 * @return the (shared) state with id {@code id}. Clone it before making moves on it.
+	 */
+	public Game getGame(int id)
+	{
+		return games[id];
+	}
+
+	/**
+	 *
+	 * @param id
+	 * @return the {@link Game#hashCode} of the state with id {@code id}
+	 */
+	public int getHash(int id)
+	{
+		return hashes[id];
+	}
+
+}
@@ -0,0 +1,129 @@
+package ticTacToe;
+
+import java.util.Arrays;
+
+/**
+ * A max priority queue of state ids, backed by an indexed binary heap in primitive arrays. Each state is in the queue at
+ * most once; {@link #raise} inserts it or increases its priority. Nothing is allocated after construction.
+ *
+ * Used by the prioritized sweeping mode of {@link ValueIterationAgent}.
+ *
+ */
+class StatePriorityQueue {
+
+	/**
+	 * the heap of state ids, ordered by priority
+	 */
+	final int[] heap;
+
+	/**
+	 * the position of each state in {@link #heap}, or -1 if it's not queued
+	 */
+	final int[] position;
+
+	/**
+	 * the priority of each queued state
+	 */
+	final double[] priority;
+
+	int size=0;
+
+	/**
+	 *
+	 * @param numStates the queue holds state ids between 0 and {@code numStates-1}
+	 */
+	StatePriorityQueue(int numStates)
+	{
+		heap=new int[numStates];
+		position=new int[numStates];
+		priority=new double[numStates];
+		Arrays.fill(position, -1);
+	}
+
+	boolean isEmpty()
+	{
+		return size==0;
+	}
+
+	/**
+	 * Queues state {@code s} with priority {@code p}. If {@code s} is already queued its priority becomes the larger of the
+	 * two.
+	 * @param s
+	 * @param p
+	 */
+	void raise(int s, double p)
+	{
+		int i=position[s];
+		if (i<0)
+		{
+			i=size++;
+			heap[i]=s;
+			position[s]=i;
+		}
+		else if (p<=priority[s])
+			return;
+
+		priority[s]=p;
+		siftUp(i);
+	}
+
+	/**
+	 * Removes the state with the highest priority.
+	 * @return the state removed
+	 */
+	int poll()
+	{
+		int top=heap[0];
+		position[top]=-1;
+		size--;
+		if (size>0)
+		{
+			heap[0]=heap[size];
+			position[heap[0]]=0;
+			siftDown(0);
+		}
+
+		return top;
+	}
+
+	private void siftUp(int i)
+	{
+		int s=heap[i];
+		while (i>0)
+		{
+			int parent=(i-1)>>>1;
+			if (priority[heap[parent]]>=priority[s])
+				break;
+
+			heap[i]=heap[parent];
+			position[heap[i]]=i;
+			i=parent;
+		}
+		heap[i]=s;
+		position[s]=i;
+	}
+
+	private void siftDown(int i)
+	{
+		int s=heap[i];
+		while (true)
+		{
+			int child=2*i+1;
+			if (child>=size)
+				break;
+
+			if (child+1<size && priority[heap[child+1]]>priority[heap[child]])
+				child++;
+
+			if (priority[heap[child]]<=priority[s])
+				break;
+
+			heap[i]=heap[child];
+			position[heap[i]]=i;
+			i=child;
+		}
+		heap[i]=s;
+		position[s]=i;
+	}
+
+}
@@ -0,0 +1,134 @@
+package ticTacToe;
+
+/**
+ * The 8 symmetries of the board (the dihedral group of the square): 4 rotations and 4 reflections. A symmetry is
+ * identified by an int between 0 and {@link #COUNT}-1, 0 being the identity, and maps cell (x,y) to another cell.
+ *
+ * Every game has a canonical representative among its 8 transformed copies, the one with the lowest
+ * {@link Game#hashCode}, see {@link Game#canonicalTransform()}. Symmetric games have the same values, q-values and
+ * (transformed) optimal moves, so planners and learners only need to consider the canonical games, and transform moves
+ * back with {@link #inverseMove} when playing.
+ *
+ */
+public final class Symmetry {
+
+	/**
+	 * the number of symmetries
+	 */
+	public static final int COUNT=8;
+
+	public static final int IDENTITY=0;
+
+	/**
+	 * CELL[t][c] is the cell that cell c (i.e. {@code 3*x+y}) is mapped to by symmetry t
+	 */
+	static final int[][] CELL=new int[COUNT][9];
+
+	/**
+	 * INVERSE_CELL[t][c] is the cell that symmetry t maps to cell c
+	 */
+	static final int[][] INVERSE_CELL=new int[COUNT][9];
+
+	/**
+	 * BITS[t][b] is the bitboard b with every cell mapped by symmetry t
+	 */
+	static final int[][] BITS=new int[COUNT][Game.FULL+1];
+
+	static {
+		for(int t=0;t<COUNT;t++)
+		{
+			for(int x=0;x<3;x++)
+				for(int y=0;y<3;y++)
+				{
+					int image;
+					switch(t)
+					{
+					case 0: image=3*x+y; break;//identity
+					case 1: image=3*y+(2-x); break;//rotate 90 degrees
+					case 2: image=3*(2-x)+(2-y); break;//rotate 180 degrees
+					case 3: image=3*(2-y)+x; break;//rotate 270 degrees
+					case 4: image=3*x+(2-y); break;//mirror left-right
+					case 5: image=3*(2-x)+y; break;//mirror top-bottom
+					case 6: image=3*y+x; break;//transpose
+					default: image=3*(2-y)+(2-x); break;//anti-transpose
+					}
+					CELL[t][3*x+y]=image;
+					INVERSE_CELL[t][image]=3*x+y;
+				}
+
+			for(int b=0;b<=Game.FULL;b++)
+				BITS[t][b]=transformBitsSlow(t, b);
+		}
+	}
+
+	private Symmetry()
+	{}
+
+	private static int transformBitsSlow(int t, int bits)
+	{
+		int result=0;
+		for(int c=0;c<9;c++)
+			if ((bits&(1<<c))!=0)
+				result|=1<<CELL[t][c];
+
+		return result;
+	}
+
+	/**
+	 *
+	 * @param t a symmetry
+	 * @param cell a cell, {@code 3*x+y}
+	 * @return the cell that {@code cell} is mapped to by {@code t}
+	 */
+	public static int transformCell(int t, int cell)
+	{
+		return CELL[t][cell];
+	}
+
+	/**
+	 *
+	 * @param t a symmetry
+	 * @param cell a cell, {@code 3*x+y}
+	 * @return the cell that {@code t} maps to {@code cell}
+	 */
+	public static int inverseCell(int t, int cell)
+	{
+		return INVERSE_CELL[t][cell];
+	}
+
+	/**
+	 *
+	 * @param t a symmetry
+	 * @param bits a bitboard
+	 * @return the bitboard with each cell mapped by {@code t}
+	 */
+	public static int transformBits(int t, int bits)
+	{
+		return BITS[t][bits];
+	}
+
+	/**
+	 *
+	 * @param m a move in a game
+	 * @param t a symmetry
+	 * @return the same move in the game transformed by {@code t}
+	 */
+	public static Move transformMove(Move m, int t)
+	{
+		int cell=CELL[t][3*m.x+m.y];
+		return Move.of(m.who.getName(), cell);
+	}
+
+	/**
+	 *
+	 * @param m a move in a game transformed by {@code t}
+	 * @param t a symmetry
+	 * @return the same move in the original game
+	 */
+	public static Move inverseMove(Move m, int t)
+	{
+		int cell=INVERSE_CELL[t][3*m.x+m.y];
+		return Move.of(m.who.getName(), cell);
+	}
+
+}
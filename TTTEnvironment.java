@@ -42,6 +42,16 @@ public class TTTEnvironment {
 		game=new Game(new Agent(), opponent);
 	}
 	
+	/**
+	 * An environment on an m,n,k-game board (e.g. 4x4) instead of the Tic-Tac-Toe one, see {@link MNKGame}.
+	 * @param board
+	 * @param opponent
+	 */
+	public TTTEnvironment(MNKBoard board, Agent opponent)
+	{
+		game=new MNKGame(board, new Agent(), opponent);
+	}
+	
 	public TTTEnvironment(Agent opponent, double winReward, double loseReward, double livingReward, double drawReward)
 	{
 		game=new Game(new Agent(), opponent);
@@ -137,11 +147,11 @@ public class TTTEnvironment {
 	
 	
 	/**
-	 * Resets current game state to a new game state (empty board)
+	 * Resets current game state to a new game state (empty board), against the same opponent
 	 */
 	public void reset()
 	{
-		this.game=new Game(new Agent(), new RandomAgent());
+		this.game=game.newGame(new Agent(), game.o);
 	}
 	
 	
@@ -2,6 +2,7 @@ package ticTacToe;
 
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -26,6 +27,11 @@ public class TTTMDP {
 	double livingReward=-1.00;
 	double drawReward=0.0;
 	
+	/**
+	 * the transitions already generated, null unless enabled with {@link #enableCache(int)}
+	 */
+	TransitionCache cache;
+	
 	public TTTMDP() {
 	
 		
@@ -38,12 +44,55 @@ public class TTTMDP {
 		this.drawReward=draw;
 	}
 	
+	/**
+	 * Changes the rewards of this mdp. The transitions cached with the old rewards are dropped.
+	 * @param win
+	 * @param lose
+	 * @param live
+	 * @param draw
+	 */
+	public void setRewards(double win, double lose, double live, double draw) {
+		this.winReward=win;
+		this.loseReward=lose;
+		this.livingReward=live;
+		this.drawReward=draw;
+		if (cache!=null)
+			cache.validate(win, lose, live, draw);
+	}
+	
+	/**
+	 * Caches up to {@code capacity} lists of transitions, so that asking {@link #generateTransitions} again for the same 
+	 * game and move returns the list already generated. See {@link TransitionCache}.
+	 * @param capacity
+	 * @return the cache, for its counters
+	 */
+	public TransitionCache enableCache(int capacity) {
+		cache=new TransitionCache(capacity);
+		cache.validate(winReward, loseReward, livingReward, drawReward);
+		return cache;
+	}
+	
+	public void disableCache() {
+		cache=null;
+	}
+	
+	/**
+	 * @return the cache of transitions, or null if it isn't enabled
+	 */
+	public TransitionCache getCache() {
+		return cache;
+	}
+	
 	
 	/**
 	 * Generates a list of TransitionProb objects containing game outcomes (source game, move, reward, target game) tuples paired with their
 	 * probabilities. 
 	 * This essentially gives you a uniform probability distribution over all possible resulting game states and rewards when making move {@code m} 
 	 * in game {@code g}. This is implemented for you to use in your Value Iteration and Policy Iteration implementations. 
+	 * 
+	 * If the cache is enabled (see {@link #enableCache(int)}) and {@code g} is a 3x3 {@link Game} (not an {@link MNKGame}),
+	 * the list returned is unmodifiable and may be shared with earlier and later calls for the same game and move: its
+	 * source games are copies of {@code g}.
 	 * @param g
 	 * @param m
 	 * @return
@@ -58,6 +107,34 @@ public class TTTMDP {
 			throw new IllegalStateException("Value Iteration Agent is playing O. This will lead to unexpected results. It shouldn't happen.");
 		}
 		
+		//the cache is keyed on the base 3 hash, see Game.hasBase3Hash: an MNKGame's hash is a folded Zobrist hash, which 
+		//can collide, even on a 3x3 board
+		TransitionCache cache=this.cache;
+		if (cache==null || !g.hasBase3Hash() || m.x>=3 || m.y>=3)
+			return transitions(g, m);
+		
+		//the rewards are package-private fields, so check they haven't been changed behind setRewards
+		cache.validate(winReward, loseReward, livingReward, drawReward);
+		long key=TransitionCache.key(g.hashCode(), 3*m.x+m.y);
+		List<TransitionProb> result=cache.get(key);
+		if (result!=null)
+			return result;
+		
+		//the cached outcomes outlive this call: don't let them see later changes to g
+		result=transitions(g.clone(), m);
+		if (result.isEmpty())
+			return result;//an illegal move
+		
+		result=Collections.unmodifiableList(result);
+		cache.put(key, result);
+		return result;
+	}
+	
+	/**
+	 * The transitions of {@link #generateTransitions}, generated every time
+	 */
+	private List<TransitionProb> transitions(Game g, Move m)
+	{
 		List<TransitionProb> result=new ArrayList<TransitionProb>();
 		//first simulate move m
 		
@@ -137,6 +214,17 @@ public class TTTMDP {
 	
 	
 	
+	/**
+	 * Compiles this mdp into flat arrays over the states in {@code index}, so that planners can run their backups 
+	 * without calling {@link #generateTransitions} again. See {@link CompiledMDP}.
+	 * @param index
+	 * @return
+	 */
+	public CompiledMDP compile(StateIndex index)
+	{
+		return new CompiledMDP(this, index);
+	}
+	
 	public boolean isTerminal(Game g)
 	{
 		return g.isTerminal();
@@ -0,0 +1,428 @@
+package ticTacToe;
+
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A headless round-robin tournament between the agents of {@link Game#main}: every agent plays X against every other
+ * agent playing O, for a fixed number of games per pairing. Nothing is printed while playing. The games are split into
+ * fork/join tasks, so all pairings are played in parallel on a {@link ForkJoinPool}.
+ *
+ * The planning and learning agents (vi, pi, bi, ql) only know how to play X, since the {@link TTTMDP} they solve is
+ * always X's, so only random, agg and def also play as O, as in {@link Game#main}. The ql agent trains against a random
+ * agent for {@link #QL_EPISODES} episodes by default, rather than the 100 of its default constructor, so that its results
+ * are those of a trained agent.
+ *
+ * The result of each pairing is the number of X wins, draws and O wins, with the 95% Wilson score interval of each rate,
+ * written as CSV or JSON.
+ *
+ * Usage: Tournament [-games n] [-threads n] [-agents vi,pi,...] [-s x|o] [-episodes n] [-format csv|json] [-out file]
+ *
+ */
+public class Tournament {
+
+	/**
+	 * the agents that can play X
+	 */
+	public static final List<String> AGENTS=Arrays.asList("vi", "pi", "bi", "ql", "random", "agg", "def");
+
+	/**
+	 * the agents that can also play O
+	 */
+	public static final List<String> O_AGENTS=Arrays.asList("random", "agg", "def");
+
+	/**
+	 * the z value of a 95% confidence interval
+	 */
+	static final double Z=1.96;
+
+	/**
+	 * the default number of episodes the ql agent trains for
+	 */
+	public static final int QL_EPISODES=50000;
+
+	/**
+	 * pairings are split into tasks of at most this many games
+	 */
+	static final int GAMES_PER_TASK=10000;
+
+	static final String USAGE="Usage: Tournament [-games n] [-threads n] [-agents vi,pi,...] [-s x|o] [-episodes n] [-format csv|json] [-out file]";
+
+	/**
+	 * The result of a pairing
+	 */
+	public static class Result {
+
+		public final String x;
+		public final String o;
+		public long xWins;
+		public long draws;
+		public long oWins;
+
+		Result(String x, String o)
+		{
+			this.x=x;
+			this.o=o;
+		}
+
+		public long games()
+		{
+			return xWins+draws+oWins;
+		}
+
+		/**
+		 *
+		 * @param count a number of games out of {@link #games()}
+		 * @return the rate, and the low and high ends of its 95% Wilson score interval
+		 */
+		public double[] interval(long count)
+		{
+			double n=games();
+			if (n==0)
+				return new double[] {0, 0, 1};
+
+			double p=count/n;
+			double centre=(p+Z*Z/(2*n))/(1+Z*Z/n);
+			double half=Z*Math.sqrt(p*(1-p)/n+Z*Z/(4*n*n))/(1+Z*Z/n);
+			return new double[] {p, Math.max(0, centre-half), Math.min(1, centre+half)};
+		}
+	}
+
+	/**
+	 * the agents playing X and O, by name
+	 */
+	final List<String> agents;
+
+	/**
+	 * the number of games per pairing
+	 */
+	final int games;
+
+	/**
+	 * true if O starts every game
+	 */
+	final boolean oStarts;
+
+	/**
+	 * the number of episodes the ql agent trains for
+	 */
+	final int qlEpisodes;
+
+	final ForkJoinPool pool;
+
+	/**
+	 * The agent instances, one per name and side. Agents keep their side in their name (see {@link Agent#setName}), so
+	 * the same instance can't play X and O at the same time.
+	 */
+	final Map<String, Agent> xAgents=new HashMap<String, Agent>();
+	final Map<String, Agent> oAgents=new HashMap<String, Agent>();
+
+	/**
+	 *
+	 * @param agents the names of the agents taking part, see {@link #AGENTS}
+	 * @param games the number of games per pairing
+	 * @param threads the parallelism of the pool the games are played on
+	 * @param oStarts true if O starts every game, false if X does
+	 */
+	public Tournament(List<String> agents, int games, int threads, boolean oStarts)
+	{
+		this(agents, games, threads, oStarts, QL_EPISODES);
+	}
+
+	/**
+	 *
+	 * @param agents the names of the agents taking part, see {@link #AGENTS}
+	 * @param games the number of games per pairing
+	 * @param threads the parallelism of the pool the games are played on
+	 * @param oStarts true if O starts every game, false if X does
+	 * @param qlEpisodes the number of episodes the ql agent trains for
+	 */
+	public Tournament(List<String> agents, int games, int threads, boolean oStarts, int qlEpisodes)
+	{
+		for(String a: agents)
+			if (!AGENTS.contains(a))
+				throw new IllegalArgumentException("Unknown agent:"+a+". The agents are "+AGENTS);
+
+		if (games<1)
+			throw new IllegalArgumentException("There should be at least one game per pairing");
+
+		if (qlEpisodes<1)
+			throw new IllegalArgumentException("The ql agent should train for at least one episode");
+
+		this.agents=agents;
+		this.games=games;
+		this.oStarts=oStarts;
+		this.qlEpisodes=qlEpisodes;
+		this.pool=new ForkJoinPool(threads);
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @return a new agent of the type {@code name}, see {@link #newAgent(String, int)}
+	 */
+	static Agent newAgent(String name)
+	{
+		return newAgent(name, QL_EPISODES);
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @param qlEpisodes the number of episodes a ql agent trains for
+	 * @return a new agent of the type {@code name}, built as in {@link Game#main} except for the training of ql
+	 */
+	static Agent newAgent(String name, int qlEpisodes)
+	{
+		switch(name)
+		{
+		case "vi":
+			return new ValueIterationAgent();
+		case "pi":
+			return new PolicyIterationAgent();
+		case "bi":
+			return new BackwardInductionAgent();
+		case "ql":
+			return new QLearningAgent(new RandomAgent(), 0.1, qlEpisodes, 0.9);
+		case "random":
+			return new RandomAgent();
+		case "agg":
+			return new AggressiveAgent();
+		case "def":
+			DefensiveAgent def=new DefensiveAgent();
+			((DefensivePolicy) def.getPolicy()).verbose=false;
+			return def;
+		default:
+			throw new IllegalArgumentException("Unknown agent:"+name);
+		}
+	}
+
+	/**
+	 * Plays all the pairings, in parallel.
+	 * @return the result of each pairing, in the order of {@link #agents} (X first, then O).
+	 */
+	public List<Result> run()
+	{
+		List<Result> results=new ArrayList<Result>();
+		List<ForkJoinTask<long[]>> tasks=new ArrayList<ForkJoinTask<long[]>>();
+		for(String x: agents)
+			for(String o: agents)
+			{
+				if (x.equals(o) || !O_AGENTS.contains(o))
+					continue;
+
+				Agent xAgent=xAgents.computeIfAbsent(x, name -> newAgent(name, qlEpisodes));
+				Agent oAgent=oAgents.computeIfAbsent(o, name -> newAgent(name, qlEpisodes));
+				results.add(new Result(x, o));
+				tasks.add(pool.submit(new Match(xAgent, oAgent, games)));
+			}
+
+		for(int i=0;i<tasks.size();i++)
+		{
+			long[] counts=tasks.get(i).join();
+			Result r=results.get(i);
+			r.xWins=counts[Game.X_WON];
+			r.oWins=counts[Game.O_WON];
+			r.draws=counts[Game.DRAW];
+		}
+
+		return results;
+	}
+
+	/**
+	 * Plays games of a pairing, splitting them into halves until there are at most {@link #GAMES_PER_TASK}.
+	 * Returns the number of games ending in each state, indexed by {@link Game#X_WON}, {@link Game#O_WON} and
+	 * {@link Game#DRAW}.
+	 */
+	private class Match extends RecursiveTask<long[]> {
+
+		private static final long serialVersionUID=1L;
+
+		final Agent x;
+		final Agent o;
+		final int games;
+
+		Match(Agent x, Agent o, int games)
+		{
+			this.x=x;
+			this.o=o;
+			this.games=games;
+		}
+
+		@Override
+		protected long[] compute()
+		{
+			if (games>GAMES_PER_TASK)
+			{
+				Match left=new Match(x, o, games/2);
+				left.fork();
+				long[] counts=new Match(x, o, games-games/2).compute();
+				long[] other=left.join();
+				for(int i=0;i<counts.length;i++)
+					counts[i]+=other[i];
+
+				return counts;
+			}
+
+			long[] counts=new long[4];
+			for(int i=0;i<games;i++)
+				counts[play()]++;
+
+			return counts;
+		}
+
+		private int play()
+		{
+			Game g=oStarts?new Game(x, o, o):new Game(x, o);
+			try
+			{
+				while (!g.isTerminal())
+					g.executeMove(g.whoseTurn.getMove(g));
+			}
+			catch(IllegalMoveException e)
+			{
+				throw new IllegalStateException("Illegal move by "+g.whoseTurn+" in\n"+g, e);
+			}
+
+			return g.getState();
+		}
+	}
+
+	/**
+	 * Writes the results as CSV, one line per pairing, with a header line.
+	 * @param results
+	 * @param out
+	 */
+	public static void writeCsv(List<Result> results, PrintStream out)
+	{
+		out.println("x,o,games,x_wins,draws,o_wins,x_win_rate,x_win_low,x_win_high,draw_rate,draw_low,draw_high,o_win_rate,o_win_low,o_win_high");
+		for(Result r: results)
+		{
+			StringBuilder line=new StringBuilder();
+			line.append(r.x).append(',').append(r.o).append(',').append(r.games()).append(',');
+			line.append(r.xWins).append(',').append(r.draws).append(',').append(r.oWins);
+			for(long count: new long[] {r.xWins, r.draws, r.oWins})
+				for(double v: r.interval(count))
+					line.append(',').append(String.format("%.6f", v));
+
+			out.println(line);
+		}
+	}
+
+	/**
+	 * Writes the results as a JSON array, one object per pairing.
+	 * @param results
+	 * @param out
+	 */
+	public static void writeJson(List<Result> results, PrintStream out)
+	{
+		out.println("[");
+		for(int i=0;i<results.size();i++)
+		{
+			Result r=results.get(i);
+			StringBuilder line=new StringBuilder("  {");
+			line.append("\"x\": \"").append(r.x).append("\", \"o\": \"").append(r.o).append("\", \"games\": ").append(r.games());
+			line.append(", \"x_wins\": ").append(r.xWins).append(", \"draws\": ").append(r.draws).append(", \"o_wins\": ").append(r.oWins);
+			appendRate(line, "x_win", r.interval(r.xWins));
+			appendRate(line, "draw", r.interval(r.draws));
+			appendRate(line, "o_win", r.interval(r.oWins));
+			line.append((i<results.size()-1)?"},":"}");
+			out.println(line);
+		}
+		out.println("]");
+	}
+
+	private static void appendRate(StringBuilder line, String name, double[] interval)
+	{
+		line.append(", \"").append(name).append("_rate\": ").append(String.format("%.6f", interval[0]));
+		line.append(", \"").append(name).append("_interval\": [").append(String.format("%.6f", interval[1]));
+		line.append(", ").append(String.format("%.6f", interval[2])).append(']');
+	}
+
+	public static void main(String a[]) throws IOException
+	{
+		int games=10000;
+		int threads=Runtime.getRuntime().availableProcessors();
+		List<String> agents=AGENTS;
+		boolean oStarts=false;
+		int qlEpisodes=QL_EPISODES;
+		String format="csv";
+		String file=null;
+
+		Iterator<String> iter=Arrays.asList(a).iterator();
+		while (iter.hasNext())
+		{
+			String cur=iter.next();
+			if (!iter.hasNext())
+			{
+				System.out.println("Error: "+cur+" should be followed by a value");
+				return;
+			}
+			String next=iter.next();
+			switch(cur)
+			{
+			case "-games":
+				games=Integer.parseInt(next);
+				break;
+			case "-threads":
+				threads=Integer.parseInt(next);
+				break;
+			case "-agents":
+				agents=Arrays.asList(next.split(","));
+				break;
+			case "-s":
+				if (!next.equalsIgnoreCase("x") && !next.equalsIgnoreCase("o"))
+				{
+					System.out.println(USAGE);
+					return;
+				}
+				oStarts=next.equalsIgnoreCase("o");
+				break;
+			case "-episodes":
+				qlEpisodes=Integer.parseInt(next);
+				break;
+			case "-format":
+				format=next;
+				break;
+			case "-out":
+				file=next;
+				break;
+			default:
+				System.out.println(USAGE);
+				return;
+			}
+		}
+
+		List<Result> results=new Tournament(agents, games, threads, oStarts, qlEpisodes).run();
+		if (file==null)
+		{
+			write(results, format, System.out);
+			System.out.flush();
+			return;
+		}
+
+		try (PrintStream out=new PrintStream(file))
+		{
+			write(results, format, out);
+		}
+	}
+
+	private static void write(List<Result> results, String format, PrintStream out)
+	{
+		if (format.equals("json"))
+			writeJson(results, out);
+		else
+			writeCsv(results, out);
+	}
+
+}
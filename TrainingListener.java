@@ -0,0 +1,63 @@
+package ticTacToe;
+
+/**
+ * Receives the metrics of an agent while it trains, see {@link Agent#setListener}. Each metric is a named series of
+ * (step, value) points, e.g. the Bellman residual of every sweep, or the return of every episode.
+ *
+ * Agents have no listener by default, and then only test a null field where a metric would be recorded, so telemetry
+ * costs nothing when it is disabled. Listeners are called on the training thread, in order.
+ *
+ * See {@link CsvTrainingListener} and {@link HistogramTrainingListener} for the built-in sinks.
+ *
+ */
+@FunctionalInterface
+public interface TrainingListener {
+
+	/**
+	 * The Bellman residual (largest change of a value) of each sweep of value iteration, or of each sweep of policy
+	 * evaluation. The step is the sweep number.
+	 */
+	String RESIDUAL="residual";
+
+	/**
+	 * The undiscounted return of each Q-learning episode. The step is the episode number.
+	 */
+	String EPISODE_RETURN="episode_return";
+
+	/**
+	 * The sum of the absolute changes of the q-values updated in each Q-learning episode. The step is the episode number.
+	 */
+	String Q_DELTA="q_delta";
+
+	/**
+	 * The episodes played per second by a Q-learning training run, recorded once at its end. The step is the number of
+	 * episodes played.
+	 */
+	String EPISODES_PER_SECOND="episodes_per_second";
+
+	/**
+	 * The number of states whose action changed in each policy improvement step. The step is the improvement number.
+	 */
+	String POLICY_CHANGES="policy_changes";
+
+	/**
+	 * Wall-clock times, in milliseconds, of the phases of training: compiling the mdp, iterating, extracting the policy,
+	 * evaluating and improving policies, and whole Q-learning runs. The step is the improvement number for evaluating and
+	 * improving policies, and 0 for the other phases, which run once per training.
+	 */
+	String TIME_COMPILE="time_compile_ms";
+	String TIME_ITERATE="time_iterate_ms";
+	String TIME_EXTRACT_POLICY="time_extract_policy_ms";
+	String TIME_EVALUATE="time_evaluate_ms";
+	String TIME_IMPROVE="time_improve_ms";
+	String TIME_TRAIN="time_train_ms";
+
+	/**
+	 * Records {@code value} as the point {@code step} of {@code metric}
+	 * @param metric one of the metric names above
+	 * @param step
+	 * @param value
+	 */
+	void record(String metric, long step, double value);
+
+}
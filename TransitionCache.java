@@ -0,0 +1,179 @@
+package ticTacToe;
+
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded cache of the transitions generated by a {@link TTTMDP}, for tools that query the model one (game, move) at a
+ * time, e.g. to print or analyse a policy. The planners don't need it: they compile the model once, see
+ * {@link CompiledMDP}.
+ *
+ * Entries are keyed on the {@link Game#hashCode()} of the game and the cell of the move, packed into a long (see
+ * {@link #key(int, int)}). That hash is unique for 3x3 {@link Game}s only, so the mdp doesn't cache the transitions of
+ * a game without {@link Game#hasBase3Hash()}, e.g. an {@link MNKGame}, whose hash is a folded Zobrist hash. Entries are evicted in least recently used order once there
+ * are {@link #capacity} of them. The rewards of the transitions depend on the rewards of the mdp, so the cache remembers
+ * the rewards it was filled with and is cleared when they change, see {@link #validate}.
+ *
+ * The lists cached are shared by every call that hits them, and are unmodifiable; their outcomes shouldn't be changed
+ * either. The cache is synchronized, so one mdp can be queried from several threads.
+ *
+ */
+public class TransitionCache {
+
+	/**
+	 * the maximum number of entries
+	 */
+	final int capacity;
+
+	/**
+	 * the transitions, in access order
+	 */
+	private final LinkedHashMap<Long, List<TransitionProb>> entries;
+
+	/**
+	 * the rewards of the mdp when the entries were generated
+	 */
+	private double winReward, loseReward, livingReward, drawReward;
+
+	/**
+	 * the number of lookups finding their transitions, of lookups not finding them, of entries evicted, and of times
+	 * the cache was cleared because the rewards changed
+	 */
+	long hits;
+	long misses;
+	long evictions;
+	long invalidations;
+
+	/**
+	 *
+	 * @param capacity the maximum number of entries, at least 1. There are at most 4520*9 (game, move) pairs where X is
+	 * to move, fewer legal ones.
+	 */
+	public TransitionCache(int capacity)
+	{
+		if (capacity<1)
+			throw new IllegalArgumentException("The cache should hold at least 1 entry: "+capacity);
+
+		this.capacity=capacity;
+		this.entries=new LinkedHashMap<Long, List<TransitionProb>>(16, 0.75f, true) {
+
+			private static final long serialVersionUID=1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, List<TransitionProb>> eldest)
+			{
+				if (size()<=TransitionCache.this.capacity)
+					return false;
+
+				evictions++;
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * @param hash the {@link Game#hashCode()} of a game
+	 * @param cell the cell of a move, {@code 3*x+y}
+	 * @return the key of the transitions of the move in the game
+	 */
+	static long key(int hash, int cell)
+	{
+		return ((long) hash<<4)|cell;
+	}
+
+	/**
+	 * Clears the cache if it was filled with other rewards than these, and remembers them.
+	 */
+	synchronized void validate(double winReward, double loseReward, double livingReward, double drawReward)
+	{
+		if (winReward==this.winReward && loseReward==this.loseReward && livingReward==this.livingReward && drawReward==this.drawReward)
+			return;
+
+		if (!entries.isEmpty())
+		{
+			entries.clear();
+			invalidations++;
+		}
+		this.winReward=winReward;
+		this.loseReward=loseReward;
+		this.livingReward=livingReward;
+		this.drawReward=drawReward;
+	}
+
+	/**
+	 *
+	 * @param key see {@link #key(int, int)}
+	 * @return the transitions cached for {@code key}, or null
+	 */
+	public synchronized List<TransitionProb> get(long key)
+	{
+		List<TransitionProb> transitions=entries.get(key);
+		if (transitions==null)
+			misses++;
+		else
+			hits++;
+		return transitions;
+	}
+
+	/**
+	 * Caches {@code transitions} for {@code key}, evicting the least recently used entry if the cache is full
+	 * @param key see {@link #key(int, int)}
+	 * @param transitions an unmodifiable list
+	 */
+	public synchronized void put(long key, List<TransitionProb> transitions)
+	{
+		entries.put(key, transitions);
+	}
+
+	/**
+	 * Removes every entry. The counters are kept.
+	 */
+	public synchronized void clear()
+	{
+		entries.clear();
+	}
+
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	public synchronized long getEvictions()
+	{
+		return evictions;
+	}
+
+	public synchronized long getInvalidations()
+	{
+		return invalidations;
+	}
+
+	/**
+	 * @return the fraction of lookups that found their transitions, 0 before any lookup
+	 */
+	public synchronized double getHitRate()
+	{
+		long lookups=hits+misses;
+		return (lookups==0)?0:(double) hits/lookups;
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return "TransitionCache: "+entries.size()+"/"+capacity+" entries, "+hits+" hits, "+misses+" misses, "+evictions
+				+" evictions, "+invalidations+" invalidations";
+	}
+
+}
@@ -0,0 +1,155 @@
+package ticTacToe;
+
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size transposition table for {@link AlphaBetaAgent}: the result of searching a game to some depth, indexed by
+ * a 64-bit key of the game ({@link Game#longHash()}, i.e. the {@link Game#hashCode()} on 3x3 boards and a Zobrist hash on
+ * larger ones).
+ *
+ * Each entry is two longs: the data, packing the value, the depth searched, the kind of bound the value is
+ * ({@link #EXACT}, {@link #LOWER} or {@link #UPPER}) and the best move, and the key xor the data. An entry is only used if
+ * its key xor its data gives back the key probed, so an entry torn by two threads writing at once is a miss rather than
+ * a wrong result, and the table can be shared without locks. The counters are {@link LongAdder}s, so they stay exact
+ * when it is.
+ *
+ * An entry replaces the one in its slot if it is for another game, or if it was searched at least as deep.
+ *
+ */
+public class TranspositionTable {
+
+	public static final int EXACT=0;
+	public static final int LOWER=1;
+	public static final int UPPER=2;
+
+	/**
+	 * the data bit set in every entry, so that 0 is never valid data
+	 */
+	private static final long VALID=1L<<62;
+
+	final long[] keys;
+	final long[] data;
+
+	/**
+	 * log2 of the number of entries
+	 */
+	final int bits;
+
+	/**
+	 * the number of probes, and of probes finding their game
+	 */
+	final LongAdder probes=new LongAdder();
+	final LongAdder hits=new LongAdder();
+
+	/**
+	 *
+	 * @param bits log2 of the number of entries, between 1 and 30
+	 */
+	public TranspositionTable(int bits)
+	{
+		if (bits<1 || bits>30)
+			throw new IllegalArgumentException("The table should have between 2^1 and 2^30 entries: 2^"+bits);
+
+		this.bits=bits;
+		this.keys=new long[1<<bits];
+		this.data=new long[1<<bits];
+	}
+
+	private int slot(long key)
+	{
+		return (int) ((key*0x9E3779B97F4A7C15L)>>>(64-bits));
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return the data of the entry of {@code key}, or 0 if there is none
+	 */
+	public long probe(long key)
+	{
+		int i=slot(key);
+		long d=data[i];
+		probes.increment();
+		if (d==0 || (keys[i]^d)!=key)
+			return 0;
+
+		hits.increment();
+		return d;
+	}
+
+	/**
+	 * Stores the result of a search, unless its slot holds a deeper search of the same game.
+	 * @param key
+	 * @param value
+	 * @param depth the depth searched, at most 255
+	 * @param bound {@link #EXACT}, {@link #LOWER} or {@link #UPPER}
+	 * @param move the best cell, or -1
+	 */
+	public void store(long key, int value, int depth, int bound, int move)
+	{
+		int i=slot(key);
+		long old=data[i];
+		if (old!=0 && (keys[i]^old)==key && depth(old)>depth)
+			return;
+
+		long d=VALID|((long) (move+1)<<42)|((long) bound<<40)|((long) depth<<32)|(value&0xFFFFFFFFL);
+		data[i]=d;
+		keys[i]=key^d;
+	}
+
+	public static int value(long data)
+	{
+		return (int) data;
+	}
+
+	public static int depth(long data)
+	{
+		return (int) (data>>>32)&0xFF;
+	}
+
+	public static int bound(long data)
+	{
+		return (int) (data>>>40)&0x3;
+	}
+
+	/**
+	 * @return the best cell of an entry, or -1
+	 */
+	public static int move(long data)
+	{
+		return ((int) (data>>>42)&0xFF)-1;
+	}
+
+	/**
+	 * @return the fraction of the probes that found their game
+	 */
+	public double getHitRate()
+	{
+		long probes=getProbes();
+		return (probes==0)?0:(double) getHits()/probes;
+	}
+
+	public long getProbes()
+	{
+		return probes.sum();
+	}
+
+	public long getHits()
+	{
+		return hits.sum();
+	}
+
+	/**
+	 * Empties the table and resets its counters
+	 */
+	public void clear()
+	{
+		Arrays.fill(keys, 0);
+		Arrays.fill(data, 0);
+		probes.reset();
+		hits.reset();
+	}
+
+}
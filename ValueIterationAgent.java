@@ -4,6 +4,8 @@ package ticTacToe;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * A Value Iteration Agent, only very partially implemented. The methods to implement are: 
@@ -21,11 +23,33 @@ public class ValueIterationAgent extends Agent {
 	 */
 	Map<Game, Double> valueFunction=new HashMap<Game, Double>();
 	
+	/**
+	 * The dense index of the states in {@link #valueFunction}
+	 */
+	StateIndex index;
+	
+	/**
+	 * The values of the states by state id. The planning is done on this array, and {@link #valueFunction} is
+	 * updated from it after every call to {@link #iterate}.
+	 */
+	double[] values;
+	
+	/**
+	 * The {@link #mdp} compiled over {@link #index}, built on the first call to {@link #iterate}.
+	 */
+	CompiledMDP model;
+	
 	/**
 	 * the discount factor
 	 */
 	double discount=0.9;
 	
+	/**
+	 * if true, only canonical games are planned for (see {@link Game#canonical()}), which cuts the number of states by up 
+	 * to 8. The policy then looks moves up through each game's canonical representative, see {@link CanonicalPolicy}.
+	 */
+	boolean symmetric=false;
+	
 	/**
 	 * the MDP model
 	 */
@@ -36,9 +60,49 @@ public class ValueIterationAgent extends Agent {
 	 */
 	int k=10;
 	
+	/**
+	 * The ways {@link #iterate} can solve the mdp, see {@link #setMode}:
+	 * FIXED_SWEEPS runs {@link #k} sweeps where every state is backed up from the previous sweep's values.
+	 * GAUSS_SEIDEL updates values in place, sweep after sweep, until the Bellman residual of a sweep is at most {@link #theta}.
+	 * PRIORITIZED_SWEEPING keeps a queue of states ordered by their Bellman residual, always backs up the state with the 
+	 * largest one, and re-queues its predecessors, until no state has a residual above {@link #theta}.
+	 */
+	public static final int FIXED_SWEEPS=0;
+	public static final int GAUSS_SEIDEL=1;
+	public static final int PRIORITIZED_SWEEPING=2;
+	
+	/**
+	 * One of {@link #FIXED_SWEEPS}, {@link #GAUSS_SEIDEL} or {@link #PRIORITIZED_SWEEPING}
+	 */
+	int mode=FIXED_SWEEPS;
+	
+	/**
+	 * The Bellman residual threshold at which the GAUSS_SEIDEL and PRIORITIZED_SWEEPING modes stop.
+	 */
+	double theta=1e-6;
+	
+	/**
+	 * The number of Bellman backups (evaluations of max_a Q(s,a)) performed by the last call to {@link #iterate}
+	 */
+	long backups;
+	
+	/**
+	 * The number of threads {@link #iterate} uses in the FIXED_SWEEPS mode. With more than one thread each sweep is split across a 
+	 * {@link ForkJoinPool}. Every state is backed up from the previous sweep's values (Jacobi style), so the 
+	 * values are bit-identical to the single-threaded ones.
+	 */
+	int threads=1;
+	
+	/**
+	 * The Bellman residual of the last sweep, i.e. the largest change in the value of any state. In the 
+	 * PRIORITIZED_SWEEPING mode this is the bound {@link #theta} reached.
+	 */
+	double residual;
+	
 	
 	/**
-	 * This constructor trains the agent offline first and sets its policy
+	 * This constructor trains the agent offline first and sets its policy. To play a policy saved earlier instead, use
+	 * {@link #ValueIterationAgent(String)}.
 	 */
 	public ValueIterationAgent()
 	{
@@ -58,6 +122,17 @@ public class ValueIterationAgent extends Agent {
 		super(p);
 		
 	}
+	
+	/**
+	 * Initialises the agent with the policy saved in {@code policyFile} (see {@link Agent#savePolicyToFile()}), without
+	 * training.
+	 * @param policyFile
+	 * @throws IllegalArgumentException if the file is not a valid policy file
+	 * @throws java.io.UncheckedIOException if the file can't be read
+	 */
+	public ValueIterationAgent(String policyFile) {
+		this(new Policy(policyFile));
+	}
 
 	public ValueIterationAgent(double discountFactor) {
 		
@@ -67,6 +142,20 @@ public class ValueIterationAgent extends Agent {
 		train();
 	}
 	
+	/**
+	 * Trains the agent on the states reduced by symmetry if {@code symmetric} is true, see {@link #symmetric}
+	 * @param discountFactor
+	 * @param symmetric
+	 */
+	public ValueIterationAgent(double discountFactor, boolean symmetric) {
+		
+		this.discount=discountFactor;
+		this.symmetric=symmetric;
+		mdp=new TTTMDP();
+		initValues();
+		train();
+	}
+	
 	/**
 	 * Initialises the {@link ValueIterationAgent#valueFunction} map, and sets the initial value of all states to 0 
 	 * (V0 from the lectures). Uses {@link Game#inverseHash} and {@link Game#generateAllValidGames(char)} to do this. 
@@ -76,10 +165,12 @@ public class ValueIterationAgent extends Agent {
 	{
 		
 		List<Game> allGames=Game.generateAllValidGames('X');//all valid games where it is X's turn, or it's terminal.
-		for(Game g: allGames)
-			this.valueFunction.put(g, 0.0);
-		
+		this.index=new StateIndex(allGames, symmetric);
+		for(int s=0;s<index.size();s++)
+			this.valueFunction.put(index.getGame(s), 0.0);
 		
+		this.values=new double[index.size()];
+		this.model=null;
 		
 	}
 	
@@ -101,51 +192,196 @@ public class ValueIterationAgent extends Agent {
 	 *V(s)=max_a Sum_target [ T(s,a,a, target) * (R+gamma *V(target)]
 	 */
 	public void iterate() {
-	    // Value iteration algorithm to compute k-step estimates of the optimal values
-	    for (int i = 0; i < k; i++) {
-	        Map<Game, Double> newValues = new HashMap<>();
-
-	        for (Game state : valueFunction.keySet()) {
-	            double maxQValue = valueFunction.get(state);
-
-	            for (Move action : state.getPossibleMoves()) {
-	                List<TransitionProb> transitions = mdp.generateTransitions(state, action);
-	                double qValue = calculateQValue(state, action, transitions);
+		if (index==null)
+			initValues();
+		
+		long start = System.nanoTime();
+		if (model==null) {
+			model=mdp.compile(index);
+			if (listener != null)
+				listener.record(TrainingListener.TIME_COMPILE, 0, (System.nanoTime() - start) / 1e6);
+		}
+		
+		start = System.nanoTime();
+		backups = 0;
+		if (mode == GAUSS_SEIDEL)
+		    iterateInPlace();
+		else if (mode == PRIORITIZED_SWEEPING)
+		    iteratePrioritized();
+		else
+		    iterateFixed();
+	    
+	    for (int s = 0; s < values.length; s++)
+	        valueFunction.put(index.getGame(s), values[s]);
+	    
+	    if (listener != null)
+	        listener.record(TrainingListener.TIME_ITERATE, 0, (System.nanoTime() - start) / 1e6);
+	}
 
-	                if (qValue > maxQValue) {
-	                    maxQValue = qValue;
-	                }
-	            }
+	/**
+	 * The FIXED_SWEEPS mode: {@link #k} Jacobi sweeps, optionally in parallel.
+	 */
+	private void iterateFixed() {
+	    // Value iteration algorithm to compute k-step estimates of the optimal values
+		double[] newValues=new double[values.length];
+		ForkJoinPool pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+		try {
+		    for (int i = 0; i < k; i++) {
+		        if (pool == null)
+		            residual = sweep(values, newValues, 0, values.length);
+		        else
+		            residual = pool.invoke(new SweepTask(values, newValues, 0, values.length));
+		        if (listener != null)
+		            listener.record(TrainingListener.RESIDUAL, i, residual);
+
+		        double[] old = values;
+		        values = newValues;
+		        newValues = old;
+		    }
+		} finally {
+		    if (pool != null)
+		        pool.shutdown();
+		}
+		backups = (long) k * values.length;
+	}
 
-	            newValues.put(state, maxQValue);
+	/**
+	 * The GAUSS_SEIDEL mode: in place sweeps until the residual is at most {@link #theta}.
+	 */
+	private void iterateInPlace() {
+	    int sweep = 0;
+	    do {
+	        residual = 0.0;
+	        for (int s = 0; s < values.length; s++) {
+	            double v = model.backup(s, values, discount);
+	            residual = Math.max(residual, Math.abs(v - values[s]));
+	            values[s] = v;
 	        }
+	        backups += values.length;
+	        if (listener != null)
+	            listener.record(TrainingListener.RESIDUAL, sweep, residual);
+	        sweep++;
+	    } while (residual > theta);
+	}
 
-	        valueFunction = newValues;
+	/**
+	 * The PRIORITIZED_SWEEPING mode: back up the state with the largest residual first, then recompute the residuals
+	 * of its predecessors, until no residual is above {@link #theta}. There are no sweeps, so no residuals are recorded.
+	 */
+	private void iteratePrioritized() {
+	    model.buildPredecessors();
+	    StatePriorityQueue queue = new StatePriorityQueue(values.length);
+
+	    for (int s = 0; s < values.length; s++) {
+	        double r = Math.abs(model.backup(s, values, discount) - values[s]);
+	        if (r > theta)
+	            queue.raise(s, r);
 	    }
+	    backups += values.length;
+
+	    while (!queue.isEmpty()) {
+	        int s = queue.poll();
+	        values[s] = model.backup(s, values, discount);
+	        backups++;
+
+	        for (int i = model.predecessorStart[s]; i < model.predecessorStart[s + 1]; i++) {
+	            int p = model.predecessors[i];
+	            double r = Math.abs(model.backup(p, values, discount) - values[p]);
+	            backups++;
+	            if (r > theta)
+	                queue.raise(p, r);
+	        }
+	    }
+	    // there are no sweeps here: all that is known is that every residual is now at most theta
+	    residual = theta;
 	}
 
-	// calculate Q 
-
-		    private double calculateQValue(Game state, Move action, List<TransitionProb> transitions) {
-		        double qValue = 0.0;
-
-		        for (TransitionProb transitionProb : transitions) {
-		            Outcome outcome = transitionProb.outcome;
-		            double transitionProbability = transitionProb.prob;
-		            double reward = outcome.localReward;
-		            double discountedFutureValue = discount * valueFunction.get(outcome.sPrime);
+	/**
+	 * Backs up the states with ids {@code from} (inclusive) to {@code to} (exclusive) from {@code oldValues} into {@code newValues}.
+	 * @return the largest change in value over these states
+	 */
+	private double sweep(double[] oldValues, double[] newValues, int from, int to) {
+	    double maxChange = 0.0;
+	    for (int s = from; s < to; s++) {
+	        newValues[s] = model.backup(s, oldValues, discount);
+	        maxChange = Math.max(maxChange, Math.abs(newValues[s] - oldValues[s]));
+	    }
+	    return maxChange;
+	}
+	
+	/**
+	 * A {@link #sweep} over a range of states, split in halves until the ranges are small enough to back up directly.
+	 * The result is the largest change in value over the range.
+	 */
+	private class SweepTask extends RecursiveTask<Double> {
 
-		            // Q(s, a) = Sum_target [ T(s, a, target) * (R + gamma * V(target)) ]
-		            qValue += transitionProbability * (reward + discountedFutureValue);
-		        }
+	    private static final long serialVersionUID = 1L;
 
-		        return qValue;
-		    }
-		
+	    /**
+	     * ranges up to this many states are swept without splitting them further
+	     */
+	    static final int CHUNK = 256;
 
+	    final double[] oldValues;
+	    final double[] newValues;
+	    final int from;
+	    final int to;
 
+	    SweepTask(double[] oldValues, double[] newValues, int from, int to) {
+	        this.oldValues = oldValues;
+	        this.newValues = newValues;
+	        this.from = from;
+	        this.to = to;
+	    }
 
+	    @Override
+	    protected Double compute() {
+	        if (to - from <= CHUNK)
+	            return sweep(oldValues, newValues, from, to);
 
+	        int mid = (from + to) >>> 1;
+	        SweepTask left = new SweepTask(oldValues, newValues, from, mid);
+	        left.fork();
+	        double right = new SweepTask(oldValues, newValues, mid, to).compute();
+	        return Math.max(left.join(), right);
+	    }
+	}
+	
+	/**
+	 * Sets how {@link #iterate} solves the mdp. Call {@link #train} again to replan with it.
+	 * @param mode one of {@link #FIXED_SWEEPS}, {@link #GAUSS_SEIDEL} or {@link #PRIORITIZED_SWEEPING}
+	 */
+	public void setMode(int mode) {
+	    if (mode != FIXED_SWEEPS && mode != GAUSS_SEIDEL && mode != PRIORITIZED_SWEEPING)
+	        throw new IllegalArgumentException("Unknown value iteration mode: " + mode);
+	    this.mode = mode;
+	}
+	
+	/**
+	 * Sets the Bellman residual threshold of the GAUSS_SEIDEL and PRIORITIZED_SWEEPING modes.
+	 * @param theta
+	 */
+	public void setTheta(double theta) {
+	    this.theta = theta;
+	}
+	
+	/**
+	 * 
+	 * @return the number of Bellman backups performed by the last call to {@link #iterate}
+	 */
+	public long getBackups() {
+	    return backups;
+	}
+	
+	/**
+	 * Sets the number of threads used by {@link #iterate}, see {@link #threads}. Call {@link #train} again to replan with it.
+	 * @param threads at least 1
+	 */
+	public void setThreads(int threads) {
+	    if (threads < 1)
+	        throw new IllegalArgumentException("The number of threads should be at least 1");
+	    this.threads = threads;
+	}
 
 	
 	/**This method should be run AFTER the train method to extract a policy according to {@link ValueIterationAgent#valueFunction}
@@ -161,44 +397,31 @@ public class ValueIterationAgent extends Agent {
 		
 		    Policy policy = new Policy();
 
-		    // Initialize a random policy
-		    for (Game state : valueFunction.keySet()) {
-		        List<Move> possibleMoves = state.getPossibleMoves();
-		        if (!possibleMoves.isEmpty()) {
-		            // Select a random move for the initial policy
-		            Move randomMove = possibleMoves.get((int) (Math.random() * possibleMoves.size()));
-		            policy.policy.put(state, randomMove);
-		        }
-		    }
-
-		    boolean policyChanged = true;
-
-		    while (policyChanged) {
-		        // Flag to check if the policy has changed in this iteration
-		        policyChanged = false;
+		    for (int s = 0; s < values.length; s++) {
+		        int first = model.firstAction(s);
+		        int end = model.endAction(s);
+		        if (first == end)
+		            continue;
 
-		        
+		        // Start from a random move, kept unless another move has a strictly higher Q value
+		        int best = first + (int) (Math.random() * (end - first));
+		        double maxQValue = model.qValue(best, values, discount);
 
-		        for (Game state : valueFunction.keySet()) {
-		            List<Move> possibleMoves = state.getPossibleMoves();
-		            if (!possibleMoves.isEmpty()) {
-		                Move currentBestMove = policy.getMove(state);
-		                double maxQValue = calculateQValue(state, currentBestMove, mdp.generateTransitions(state, currentBestMove));
+		        for (int a = first; a < end; a++) {
+		            double qValue = model.qValue(a, values, discount);
 
-		                // Iterate through possible moves and find the move with the highest Q value
-		                for (Move action : possibleMoves) {
-		                    double qValue = calculateQValue(state, action, mdp.generateTransitions(state, action));
-
-		                    if (qValue > maxQValue) {
-		                        maxQValue = qValue;
-		                        policy.policy.put(state, action);
-		                        policyChanged = true; // Policy changed in this iteration
-		                    }
-		                }
+		            if (qValue > maxQValue) {
+		                maxQValue = qValue;
+		                best = a;
 		            }
 		        }
+
+		        policy.policy.put(index.getGame(s), model.getMove(best));
 		    }
 
+		    if (symmetric)
+		        return new CanonicalPolicy(policy.policy);
+
 		    return policy;
 		}
 
@@ -221,7 +444,10 @@ public class ValueIterationAgent extends Agent {
 		 *  
 		 */
 		
+		long start=System.nanoTime();
 		super.policy=extractPolicy();
+		if (listener!=null)
+			listener.record(TrainingListener.TIME_EXTRACT_POLICY, 0, (System.nanoTime()-start)/1e6);
 		
 		if (this.policy==null)
 		{
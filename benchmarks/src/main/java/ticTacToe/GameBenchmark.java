@@ -0,0 +1,156 @@
+package ticTacToe;
+
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the per-state operations of {@link Game} and {@link TTTMDP} that planning and learning call in their inner
+ * loops, on a fixed set of positions with X to move (see {@link #position(String)}).
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(2)
+@State(Scope.Thread)
+public class GameBenchmark {
+
+	@Param({"empty", "opening", "midgame"})
+	String position;
+
+	Game game;
+
+	/**
+	 * the first possible move in {@link #game}
+	 */
+	Move move;
+
+	TTTMDP mdp;
+
+	/**
+	 * an mdp with its {@link TransitionCache} enabled, already holding the transitions of {@link #move}
+	 */
+	TTTMDP cachedMdp;
+
+	/**
+	 * reused by {@link #legalMoveIterator()}
+	 */
+	MoveIterator moves=new MoveIterator();
+
+	@Setup
+	public void setUp() throws IllegalMoveException
+	{
+		game=position(position);
+		move=game.getPossibleMoves().get(0);
+		mdp=new TTTMDP();
+		cachedMdp=new TTTMDP();
+		cachedMdp.enableCache(1024);
+		cachedMdp.generateTransitions(game, move);
+	}
+
+	/**
+	 *
+	 * @param name empty: no move played; opening: 2 moves played; midgame: 4 moves played, no line threatened yet by X.
+	 * @return the position, with X to move
+	 */
+	static Game position(String name) throws IllegalMoveException
+	{
+		Game g=new Game(new RandomAgent(), new RandomAgent());
+		switch(name)
+		{
+		case "midgame":
+			g.executeMove('X', 0, 1);
+			g.executeMove('O', 2, 2);
+			//fall through
+		case "opening":
+			g.executeMove('X', 1, 1);
+			g.executeMove('O', 0, 0);
+			//fall through
+		case "empty":
+			return g;
+		default:
+			throw new IllegalArgumentException("Unknown position:"+name);
+		}
+	}
+
+	/**
+	 * the cached hash, as used by every hash map and {@link StateIndex} lookup
+	 */
+	@Benchmark
+	public int gameHashCode()
+	{
+		return game.hashCode();
+	}
+
+	/**
+	 * the hash computed from the bitboards, as done on every move
+	 */
+	@Benchmark
+	public int hashOf()
+	{
+		return Game.hashOf(game.xBits, game.oBits, game.side);
+	}
+
+	@Benchmark
+	public int evaluateGameState()
+	{
+		return game.evaluateGameState();
+	}
+
+	@Benchmark
+	public List<Game> getAllSuccessorGames()
+	{
+		return game.getAllSuccessorGames();
+	}
+
+	/**
+	 * the legal moves as a list, see {@link #legalMoveIterator()}
+	 */
+	@Benchmark
+	public List<Move> getPossibleMoves()
+	{
+		return game.getPossibleMoves();
+	}
+
+	/**
+	 * the same moves from the bitmask, with no allocation
+	 */
+	@Benchmark
+	public int legalMoveIterator()
+	{
+		int sum=0;
+		for(moves.reset(game);moves.hasNext();)
+			sum+=moves.next().x;
+		return sum;
+	}
+
+	@Benchmark
+	public List<TransitionProb> generateTransitions()
+	{
+		return mdp.generateTransitions(game, move);
+	}
+
+	/**
+	 * the same transitions, found in the cache
+	 */
+	@Benchmark
+	public List<TransitionProb> generateTransitionsCached()
+	{
+		return cachedMdp.generateTransitions(game, move);
+	}
+
+}
@@ -0,0 +1,107 @@
+package ticTacToe;
+
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks solving the {@link TTTMDP} with {@link ValueIterationAgent#iterate} and {@link PolicyIterationAgent#train}.
+ * The agents are built once per trial, so building the state index and the compiled model is not measured; every
+ * invocation starts again from all-zero values (and, for policy iteration, from the first action of every state), so all
+ * invocations do the same work.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=5, time=2)
+@Measurement(iterations=5, time=2)
+@Fork(2)
+public class PlanningBenchmark {
+
+	@State(Scope.Thread)
+	public static class ValueIteration {
+
+		@Param({"FIXED_SWEEPS", "GAUSS_SEIDEL", "PRIORITIZED_SWEEPING"})
+		String mode;
+
+		@Param({"false", "true"})
+		boolean symmetric;
+
+		ValueIterationAgent agent;
+
+		@Setup(Level.Trial)
+		public void setUp()
+		{
+			agent=new ValueIterationAgent(0.9, symmetric);
+			switch(mode)
+			{
+			case "GAUSS_SEIDEL":
+				agent.setMode(ValueIterationAgent.GAUSS_SEIDEL);
+				break;
+			case "PRIORITIZED_SWEEPING":
+				agent.setMode(ValueIterationAgent.PRIORITIZED_SWEEPING);
+				break;
+			default:
+				agent.setMode(ValueIterationAgent.FIXED_SWEEPS);
+			}
+		}
+
+		@Setup(Level.Invocation)
+		public void reset()
+		{
+			Arrays.fill(agent.values, 0.0);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class PolicyIteration {
+
+		@Param({"false", "true"})
+		boolean symmetric;
+
+		PolicyIterationAgent agent;
+
+		@Setup(Level.Trial)
+		public void setUp()
+		{
+			agent=new PolicyIterationAgent(0.9, symmetric);
+		}
+
+		@Setup(Level.Invocation)
+		public void reset()
+		{
+			Arrays.fill(agent.values, 0.0);
+			CompiledMDP model=agent.model;
+			for(int s=0;s<agent.policyActions.length;s++)
+				agent.policyActions[s]=(model.firstAction(s)<model.endAction(s))?model.firstAction(s):-1;
+		}
+	}
+
+	@Benchmark
+	public double valueIteration(ValueIteration state)
+	{
+		state.agent.iterate();
+		return state.agent.values[0];
+	}
+
+	@Benchmark
+	public double policyIteration(PolicyIteration state)
+	{
+		state.agent.train();
+		return state.agent.values[0];
+	}
+
+}
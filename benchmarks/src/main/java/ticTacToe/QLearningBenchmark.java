@@ -0,0 +1,78 @@
+package ticTacToe;
+
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks Q-learning against a {@link RandomAgent}: the score is in episodes per second. Each invocation plays
+ * {@link #EPISODES} more episodes with the same agent, so the measurement covers a q-table that is still learning, as in a
+ * long training run.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(2)
+@State(Scope.Thread)
+public class QLearningBenchmark {
+
+	/**
+	 * the number of episodes played per invocation
+	 */
+	static final int EPISODES=1000;
+
+	/**
+	 * train: {@link QLearningAgent#train}; batched: {@link QLearningAgent#trainBatched} with 64 games; replay:
+	 * {@link QLearningAgent#trainWithReplay} with 4 uniformly sampled transitions per move.
+	 */
+	@Param({"train", "batched", "replay"})
+	String trainer;
+
+	@Param({"false", "true"})
+	boolean symmetric;
+
+	QLearningAgent agent;
+
+	@Setup
+	public void setUp()
+	{
+		agent=new QLearningAgent(new RandomAgent(), 0.1, 0, 0.9, symmetric);
+		agent.numEpisodes=EPISODES;
+		agent.random=new Random(42);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(EPISODES)
+	public int episodes() throws IllegalMoveException
+	{
+		switch(trainer)
+		{
+		case "batched":
+			agent.trainBatched(64);
+			break;
+		case "replay":
+			agent.trainWithReplay(100000, 4, false);
+			break;
+		default:
+			agent.train();
+		}
+
+		return agent.qValues.getGreedyCell(0);
+	}
+
+}